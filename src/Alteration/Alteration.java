@@ -1,9 +1,13 @@
 package Alteration;
 
+import CodeRM.Metrics;
+import Utilities.CodewordBuffer;
 import Utilities.ParsePGM;
 
 import java.math.BigInteger;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
 
 
 /**
@@ -11,6 +15,23 @@ import java.util.Random;
  *
  * The alteration is done following a line.
  *
+ * The static methods on 'BigInteger' and on an image alter the bits before the number of bits
+ * set of the word. The static methods on a 'long[]' alter all the 2^r bits of each word.
+ *
+ * An instance of this class is a noise channel : each of the 2^r bits of an encoded
+ * word is flipped with the probability 'line'. The generator is seeded, so the same
+ * seed gives the same alterations. Instead of drawing a number for each bit, the
+ * distance to the next flipped bit is drawn (geometric law), so the cost depends
+ * on the number of flipped bits only.
+ * An instance must be used by one thread only, 'split()' gives an independent
+ * channel for another thread.
+ *
+ * A channel can also make bursts of errors (Gilbert-Elliott model) : it is in a good
+ * or a bad state, each with its own probability to flip a bit, and goes from one state
+ * to the other with a probability per bit. The state is kept from one word to the next,
+ * so a burst can go over several words (see 'CodeRM.Interleaver').
+ * The numbers of altered words and flipped bits can be recorded (see 'setMetrics').
+ *
  * @author  Axel Fahy
  * @author  Rudolf Höhn
  *
@@ -18,6 +39,394 @@ import java.util.Random;
  */
 public class Alteration {
 
+    // Number of words altered by a task in 'alterParallel'.
+    private static final int PARALLEL_CHUNK = 1024;
+
+    // Probability to flip a bit.
+    private double line;
+
+    // log(1 - line), to draw the distance between two flipped bits.
+    private double logKeep;
+
+    private SplittableRandom random;
+
+    // Burst channel (Gilbert-Elliott) : probability to flip a bit in the bad state,
+    // probabilities to go from the good to the bad state and back, per bit.
+    private boolean burst;
+    private double lineBad;
+    private double logKeepBad;
+    private double toBad;
+    private double toGood;
+
+    // Burst channel : current state, number of bits left in this state,
+    // and number of bits kept before the next flipped bit for the next word (-1 if not drawn).
+    private boolean bad;
+    private long stay;
+    private long pending = -1;
+
+    // Instrumentation (see 'setMetrics').
+    private Metrics metrics = Metrics.NONE;
+
+    // True if 'metrics' records the values.
+    private boolean measured;
+
+    /**
+     * Constructor of a noise channel.
+     *
+     * @param line The probability to flip a bit (between 0.0 and 1.0).
+     * @param seed The seed of the generator.
+     */
+    public Alteration(double line, long seed) {
+        this(line, new SplittableRandom(seed));
+    }
+
+    /**
+     * Constructor of a noise channel with a generator.
+     */
+    private Alteration(double line, SplittableRandom random) {
+        this.line = line;
+        this.logKeep = Math.log1p(-line);
+        this.random = random;
+    }
+
+    /**
+     * Constructor of a burst noise channel (Gilbert-Elliott model).
+     *
+     * The mean length of a burst is 1 / toGood bits, the mean length between
+     * two bursts is 1 / toBad bits. The channel starts in a state drawn with the
+     * probabilities of the long run (bad with the probability toBad / (toBad + toGood)).
+     *
+     * @param line    The probability to flip a bit in the good state.
+     * @param lineBad The probability to flip a bit in the bad state.
+     * @param toBad   The probability to go from the good to the bad state after a bit.
+     * @param toGood  The probability to go from the bad to the good state after a bit.
+     * @param seed    The seed of the generator.
+     */
+    public Alteration(double line, double lineBad, double toBad, double toGood, long seed) {
+        this(line, lineBad, toBad, toGood, new SplittableRandom(seed));
+    }
+
+    /**
+     * Constructor of a burst noise channel with a generator.
+     */
+    private Alteration(double line, double lineBad, double toBad, double toGood, SplittableRandom random) {
+        this(line, random);
+        if (toBad < 0 || toBad > 1 || toGood < 0 || toGood > 1 || toBad + toGood == 0) {
+            throw new IllegalArgumentException("Invalid probabilities of change of state.");
+        }
+        this.burst = true;
+        this.lineBad = lineBad;
+        this.logKeepBad = Math.log1p(-lineBad);
+        this.toBad = toBad;
+        this.toGood = toGood;
+        this.bad = random.nextDouble() < badShare();
+        this.stay = stay();
+    }
+
+    /**
+     * Get an independent noise channel, with the same probability,
+     * to use in another thread.
+     *
+     * @return The new channel.
+     */
+    public Alteration split() {
+        Alteration channel = burst
+                ? new Alteration(line, lineBad, toBad, toGood, random.split())
+                : new Alteration(line, random.split());
+        channel.setMetrics(metrics);
+        return channel;
+    }
+
+    /**
+     * Get a noise channel with the same probabilities, seeded with 'seed'.
+     *
+     * The same seed gives the same alterations, whatever the channel it is split from
+     * (e.g. one channel per batch of words, in any thread). A burst channel starts in
+     * a new state drawn with the probabilities of the long run.
+     *
+     * @param seed The seed of the generator.
+     * @return     The new channel.
+     */
+    public Alteration split(long seed) {
+        Alteration channel = burst
+                ? new Alteration(line, lineBad, toBad, toGood, seed)
+                : new Alteration(line, seed);
+        channel.setMetrics(metrics);
+        return channel;
+    }
+
+    /**
+     * Record the numbers of altered words and flipped bits in 'metrics'.
+     * The channels given by 'split()' use the same metrics.
+     *
+     * @param metrics The metrics, 'Metrics.NONE' (or null) to record nothing.
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics != null ? metrics : Metrics.NONE;
+        this.measured = this.metrics.isEnabled();
+    }
+
+    /**
+     * Get the metrics recording the alterations.
+     *
+     * @return The metrics, 'Metrics.NONE' if nothing is recorded.
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Get the probability to flip a bit (in the long run for a burst channel).
+     */
+    public double getLine() {
+        if (burst) {
+            return line + (lineBad - line) * badShare();
+        }
+        return line;
+    }
+
+    /**
+     * Tell if the channel makes bursts of errors.
+     */
+    public boolean isBurst() {
+        return burst;
+    }
+
+    /**
+     * Part of the time spent in the bad state, in the long run.
+     */
+    private double badShare() {
+        return toBad / (toBad + toGood);
+    }
+
+    /**
+     * Draw the number of bits kept before the next flipped bit.
+     *
+     * @return The number of bits kept (Long.MAX_VALUE if no bit is flipped).
+     */
+    private long skip() {
+        if (burst) {
+            return burstSkip();
+        }
+        return skip(line, logKeep);
+    }
+
+    /**
+     * Draw the number of bits kept before the next flipped bit, with a probability 'line' to flip a bit.
+     *
+     * @param line    The probability to flip a bit.
+     * @param logKeep log(1 - line).
+     * @return        The number of bits kept (Long.MAX_VALUE if no bit is flipped).
+     */
+    private long skip(double line, double logKeep) {
+        if (line <= 0) {
+            return Long.MAX_VALUE;
+        }
+        if (line >= 1) {
+            return 0;
+        }
+        double skip = Math.floor(Math.log(1.0 - random.nextDouble()) / logKeep);
+        return skip >= Long.MAX_VALUE ? Long.MAX_VALUE : (long)skip;
+    }
+
+    /**
+     * Draw the number of bits of a stay in the current state (at least 1).
+     */
+    private long stay() {
+        double change = bad ? toGood : toBad;
+        if (change <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return 1 + skip(change, Math.log1p(-change));
+    }
+
+    /**
+     * Draw the number of bits kept before the next flipped bit on a burst channel.
+     *
+     * The distances to the next flipped bit and to the next change of state are drawn,
+     * the nearest one happens first. Both laws are geometric, so the other distance can
+     * be drawn again after it.
+     *
+     * @return The number of bits kept (Long.MAX_VALUE / 2 if no bit is flipped anymore).
+     */
+    private long burstSkip() {
+        if (line <= 0 && lineBad <= 0) {
+            return Long.MAX_VALUE / 2;
+        }
+        long kept = 0;
+        while (kept < Long.MAX_VALUE / 4) {
+            if (stay == 0) {
+                bad = !bad;
+                stay = stay();
+            }
+            long skip = bad ? skip(lineBad, logKeepBad) : skip(line, logKeep);
+            if (skip < stay) {
+                if (stay != Long.MAX_VALUE) {
+                    stay -= skip + 1;
+                }
+                return kept + skip;
+            }
+            if (stay == Long.MAX_VALUE) {
+                break;
+            }
+            kept += stay;
+            stay = 0;
+        }
+        return Long.MAX_VALUE / 2;
+    }
+
+    /**
+     * Position of the first flipped bit of the next words.
+     * On a burst channel, the position drawn after the previous words is used.
+     */
+    private long first() {
+        long position = burst && pending >= 0 ? pending : skip();
+        pending = -1;
+        return position;
+    }
+
+    /**
+     * Keep the position of the next flipped bit after 'total' bits (burst channel only).
+     */
+    private void last(long position, long total) {
+        if (burst) {
+            pending = position - total;
+        }
+    }
+
+    /**
+     * Alter an encoded word of 64 bits or less.
+     *
+     * Each bit is flipped with the probability 'line'.
+     *
+     * @param code   The encoded word.
+     * @param length The number of bits of the word (2^r).
+     * @return       The altered word.
+     */
+    public long alter(long code, int length) {
+        int flips = 0;
+        long position = first();
+        while (position < length) {
+            code ^= 1L << position;
+            flips++;
+            position += 1 + skip();
+        }
+        last(position, length);
+        if (measured) {
+            metrics.altered(1, flips);
+        }
+        return code;
+    }
+
+    /**
+     * Alter an encoded word stored in a 'long[]', in place.
+     *
+     * Same as 'alter(code, 0, 1, words, length)', without recording the duration :
+     * as for 'alter(long, int)', the caller times the words by blocks (e.g. 'Pipeline').
+     *
+     * @param code   The encoded word.
+     * @param length The number of bits of the word (2^r).
+     */
+    public void alterWord(long[] code, int length) {
+        flip(code, 0, 1, (length + 63) >>> 6, length);
+    }
+
+    /**
+     * Alter encoded words stored in a 'long[]', in place.
+     *
+     * Each bit of each word is flipped with the probability 'line'.
+     * The words are seen as one stream of bits, so the cost depends
+     * on the number of flipped bits only.
+     *
+     * @param codes  The encoded words, 'words' longs per word.
+     * @param offset The position of the first word in the array.
+     * @param count  The number of words to alter.
+     * @param words  The number of longs of an encoded word.
+     * @param length The number of bits of a word (2^r).
+     */
+    public void alter(long[] codes, int offset, int count, int words, int length) {
+        if (!measured) {
+            flip(codes, offset, count, words, length);
+            return;
+        }
+        long start = System.nanoTime();
+        flip(codes, offset, count, words, length);
+        metrics.latency(Metrics.Operation.ALTER, System.nanoTime() - start, count);
+    }
+
+    /**
+     * Flip the bits of 'count' words (see 'alter(long[], int, int, int, int)').
+     */
+    private void flip(long[] codes, int offset, int count, int words, int length) {
+        long total = (long)count * length;
+        long flips = 0;
+        long position = first();
+        while (position < total) {
+            int word = (int)(position / length);
+            int bit = (int)(position % length);
+            codes[offset + word * words + (bit >>> 6)] ^= 1L << (bit & 63);
+            flips++;
+            position += 1 + skip();
+        }
+        last(position, total);
+        if (measured) {
+            metrics.altered(count, flips);
+        }
+    }
+
+    /**
+     * Alter the encoded words of a buffer stored off-heap, in place.
+     *
+     * Each bit of each word is flipped with the probability 'line'.
+     * The bits are flipped directly in the buffer, nothing is copied.
+     *
+     * @param codes The encoded words.
+     */
+    public void alter(CodewordBuffer codes) {
+        long start = measured ? System.nanoTime() : 0;
+        long total = (long)codes.getCount() << codes.getRang();
+        long flips = 0;
+        long position = first();
+        while (position < total) {
+            codes.flip(position);
+            flips++;
+            position += 1 + skip();
+        }
+        last(position, total);
+        if (measured) {
+            metrics.altered(codes.getCount(), flips);
+            metrics.latency(Metrics.Operation.ALTER, System.nanoTime() - start, codes.getCount());
+        }
+    }
+
+    /**
+     * Alter encoded words stored in a 'long[]', in place, using all the processors.
+     *
+     * The words are split in chunks, each chunk gets its own generator,
+     * split from this one in the order of the chunks. So the result
+     * only depends on the seed, not on the number of processors.
+     *
+     * @param codes  The encoded words, 'words' longs per word.
+     * @param words  The number of longs of an encoded word.
+     * @param length The number of bits of a word (2^r).
+     */
+    public void alterParallel(long[] codes, int words, int length) {
+        long start = measured ? System.nanoTime() : 0;
+        final int count = codes.length / words;
+        int chunks = (count + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK;
+        final Alteration[] channels = new Alteration[chunks];
+        for (int c = 0; c < chunks; c++) {
+            channels[c] = split();
+        }
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int first = c * PARALLEL_CHUNK;
+            channels[c].flip(codes, first * words, Math.min(PARALLEL_CHUNK, count - first), words, length);
+        });
+        if (measured) {
+            metrics.latency(Metrics.Operation.ALTER, System.nanoTime() - start, count);
+        }
+    }
+
     /**
      * Alter an encoded word.
      *
@@ -50,16 +459,58 @@ public class Alteration {
     public static String alter(String buffer, double line) {
         String header = ParsePGM.readHeader(buffer);
         String data = ParsePGM.readData(buffer);
-        String output = "";
+        StringBuilder output = new StringBuilder(header);
 
         for (String s : data.split(" ")) {
             // Exclude whitespaces
             if (s.trim().length() > 0) {
                 BigInteger word = new BigInteger(s.trim());
-                output += Alteration.alter(word, line).toString();
-                output += " ";
+                output.append(Alteration.alter(word, line).toString());
+                output.append(' ');
+            }
+        }
+        return output.toString();
+    }
+
+    /**
+     * Alter encoded words stored in a 'long[]'.
+     *
+     * Each of the 'length' bits of each word is flipped with the probability 'line'.
+     *
+     * @param codes  The encoded words, 'words' longs per word.
+     * @param words  The number of longs of an encoded word.
+     * @param length The number of bits of an encoded word (2^r).
+     * @param line   The line that we want our words altered.
+     * @return       The altered words.
+     */
+    public static long[] alter(long[] codes, int words, int length, double line) {
+        Random random = new Random();
+        long[] output = codes.clone();
+
+        for (int offset = 0; offset < output.length; offset += words) {
+            alter(output, offset, length, line, random);
+        }
+        return output;
+    }
+
+    /**
+     * Alter an encoded word stored in a 'long[]', in place.
+     *
+     * We generate a random number for each of the 'length' bits of the word and if
+     * the generated number is lower than the line, we flip the bit.
+     * For a seeded channel drawing only the flipped bits, see 'Alteration(double, long)'.
+     *
+     * @param code   The array containing the encoded word.
+     * @param offset The position of the word in the array.
+     * @param length The number of bits of the encoded word (2^r).
+     * @param line   The line that we want our word altered.
+     * @param random The random generator to use.
+     */
+    public static void alter(long[] code, int offset, int length, double line, Random random) {
+        for (int i = 0; i < length; i++) {
+            if (line > random.nextFloat()) {
+                code[offset + (i >>> 6)] ^= 1L << (i & 63);
             }
         }
-        return header + output;
     }
 }
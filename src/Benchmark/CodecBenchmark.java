@@ -0,0 +1,211 @@
+package Benchmark;
+
+import Alteration.Alteration;
+import CodeRM.ReedMuller;
+import Utilities.PGMReader;
+import Utilities.ParsePGM;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Benchmarks of the Reed-Muller code and of the alteration.
+ *
+ * For each benchmark, some warm-up rounds are run, then the measured rounds.
+ * Each round runs the operation for about 'ROUND_TIME' milliseconds.
+ * The result is the number of operations per second and the number of bytes
+ * allocated per operation (measured by the JVM for the current thread).
+ *
+ * Benchmarks :
+ *  - Single word : encode, decode, unalter and alter, for r from 3 to 10
+ *    and several noise levels. The words are altered with the seeded noise channel
+ *    ('Alteration(double, long)'), each bit is flipped with the probability of the noise level.
+ *  - Whole image : encode of 'lena_128x128_64.pgm', unalter and decode of
+ *    'mars-crat.enc.alt_0.07' and 'mars-crat.enc.alt_0.10' (r = 5).
+ *
+ * Usage : java Benchmark.CodecBenchmark [filter]
+ *  Only the benchmarks with a name containing the filter are run.
+ *  The image files are read from the current directory.
+ */
+public class CodecBenchmark {
+
+    // Duration of a round in milliseconds.
+    private static final long ROUND_TIME = 500;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    // Number of words prepared for the single word benchmarks.
+    private static final int SAMPLES = 1024;
+
+    private static final double[] NOISES = {0.01, 0.05, 0.1};
+
+    // Results are accumulated here so that the JIT can't remove the operations.
+    private static volatile long sink;
+
+    /**
+     * An operation to measure.
+     */
+    interface Operation {
+
+        /**
+         * Run the operation once.
+         *
+         * @param i The number of the run.
+         * @return  A value depending on the result.
+         */
+        long run(int i);
+    }
+
+    private String filter;
+
+    public CodecBenchmark(String filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Measure an operation and print the result.
+     *
+     * @param name The name of the benchmark.
+     * @param op   The operation.
+     */
+    private void measure(String name, Operation op) {
+        if (!name.contains(filter)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            runRound(op);
+        }
+        double totalOps = 0;
+        long totalTime = 0;
+        long bytesBefore = bean.getThreadAllocatedBytes(threadId);
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            totalOps += runRound(op);
+            totalTime += System.nanoTime() - start;
+        }
+        long bytes = bean.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+        double opsPerSecond = totalOps * 1e9 / totalTime;
+        System.out.printf("%-52s %14.1f ops/s %12.1f B/op%n", name, opsPerSecond, bytes / totalOps);
+    }
+
+    /**
+     * Run an operation during 'ROUND_TIME' milliseconds.
+     *
+     * @return The number of operations done.
+     */
+    private static long runRound(Operation op) {
+        long end = System.nanoTime() + ROUND_TIME * 1000000L;
+        long count = 0;
+        long result = 0;
+        do {
+            // Check the time every 64 operations only.
+            for (int i = 0; i < 64; i++) {
+                result += op.run((int)(count + i));
+            }
+            count += 64;
+        } while (System.nanoTime() < end);
+        sink = result;
+        return count;
+    }
+
+    /**
+     * Benchmarks on a single word.
+     *
+     * @param r The rang of the code.
+     */
+    private void words(int r) {
+        final ReedMuller rm = new ReedMuller(r);
+        final int words = rm.getWords();
+        final int mask = SAMPLES - 1;
+        Random random = new Random(r);
+
+        final int[] messages = new int[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            messages[i] = random.nextInt(2 << r);
+        }
+        final long[] codes = rm.encode(messages);
+        final long[] code = new long[words];
+
+        measure("encode r=" + r, i -> {
+            rm.encodeWord(messages[i & mask], code);
+            return code[0];
+        });
+        measure("decode r=" + r, i -> {
+            int offset = (i & mask) * words;
+            return words == 1 ? rm.decodeWord(codes[offset]) : decodeAt(rm, codes, offset, code);
+        });
+
+        final int length = rm.getLength();
+        for (double noise : NOISES) {
+            final long[] altered = codes.clone();
+            new Alteration(noise, r).alter(altered, 0, SAMPLES, words, length);
+            final Alteration channel = new Alteration(noise, r);
+
+            measure("unalter r=" + r + " noise=" + noise, i -> {
+                int offset = (i & mask) * words;
+                if (words == 1) {
+                    return rm.unalterWord(altered[offset]);
+                }
+                System.arraycopy(altered, offset, code, 0, words);
+                rm.unalterWord(code, code);
+                return code[0];
+            });
+            measure("alter r=" + r + " noise=" + noise, i -> {
+                System.arraycopy(codes, (i & mask) * words, code, 0, words);
+                channel.alter(code, 0, 1, words, length);
+                return code[0];
+            });
+            final int[] batch = new int[SAMPLES];
+            measure("unalter batch r=" + r + " noise=" + noise, i -> {
+                // One operation is one word, the block of 64 words is corrected every 64 operations.
+                if ((i & 63) == 0) {
+                    rm.unalterBatch(altered, (i & mask) * words, batch, i & mask, 64);
+                }
+                return batch[i & mask];
+            });
+        }
+    }
+
+    /**
+     * Decode the word at 'offset' in 'codes', using 'code' as buffer.
+     */
+    private static long decodeAt(ReedMuller rm, long[] codes, int offset, long[] code) {
+        System.arraycopy(codes, offset, code, 0, code.length);
+        return rm.decodeWord(code);
+    }
+
+    /**
+     * Benchmarks on whole images.
+     */
+    private void images() throws IOException {
+        final ReedMuller rm = new ReedMuller(5);
+
+        PGMReader reader = PGMReader.open("lena_128x128_64.pgm");
+        final int[] lena = ParsePGM.readPixels(reader);
+        reader.close();
+        measure("image encode lena", i -> rm.encode(lena)[i % lena.length]);
+
+        for (String file : new String[] {"mars-crat.enc.alt_0.07", "mars-crat.enc.alt_0.10"}) {
+            reader = PGMReader.open(file);
+            final long[] mars = ParsePGM.readWords(reader, 1, 32);
+            reader.close();
+            measure("image unalter+decode " + file, i -> rm.decode(rm.unalter(mars))[i % (mars.length)]);
+            measure("image parallel unalter+decode " + file,
+                    i -> rm.decodeParallel(rm.unalterParallel(mars))[i % (mars.length)]);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        CodecBenchmark benchmark = new CodecBenchmark(args.length > 0 ? args[0] : "");
+        for (int r = 3; r <= 10; r++) {
+            benchmark.words(r);
+        }
+        benchmark.images();
+    }
+}
@@ -0,0 +1,245 @@
+package CodeRM;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Non-interactive command line : runs a pipeline (see 'Pipeline.parse') on an image
+ * or on all the images of a directory, in one pass per image.
+ *
+ * Usage : java Main -r <r> -p <stages> -i <input> -o <output> [-t <threads>] [-s <seed>] [-b] [-m]
+ *
+ *  -r  The rang of the code.
+ *  -p  The stages, e.g. "encode,alter:0.07,unalter,decode".
+ *  -i  A PGM file, or a directory : all its files are processed (except the hidden ones),
+ *      whatever their extension (e.g. the encoded images written by a previous run).
+ *  -o  The output file, or the output directory (created if needed) if the input is a directory.
+ *      The output files are replaced.
+ *  -t  The number of images processed at the same time (the number of processors by default).
+ *  -s  The seed of the noise channels (the time by default). Each image gets its own
+ *      channels, seeded in the order of the names of the files.
+ *  -b  Write binary PGM files (P5), for pipelines ending with "decode". Text files (P2) by default.
+ *      The input files can be text or binary.
+ *  -m  Print the metrics in JSON (see 'StripedMetrics') on the error output at the end.
+ *
+ * A summary is printed on the error output. The exit code is 1 if an image failed,
+ * 2 if the options are wrong or the input directory has no file.
+ */
+public class Batch {
+
+    private static final String USAGE =
+            "Usage : java Main -r <r> -p <stages> -i <input> -o <output> [-t <threads>] [-s <seed>] [-b] [-m]";
+
+    private ReedMuller rm;
+    private String stages;
+    private int threads;
+    private long seed;
+    private boolean binary;
+
+    /**
+     * Constructor.
+     *
+     * @param rm      The code to use.
+     * @param stages  The stages (see 'Pipeline.parse').
+     * @param threads The number of images processed at the same time.
+     * @param seed    The seed of the noise channels.
+     */
+    public Batch(ReedMuller rm, String stages, int threads, long seed) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be at least 1.");
+        }
+        this.rm = rm;
+        this.stages = stages;
+        this.threads = threads;
+        this.seed = seed;
+        // Check the stages now rather than in each task.
+        Pipeline.parse(rm, stages, seed);
+    }
+
+    /**
+     * Write binary PGM files (P5) instead of text files (P2).
+     *
+     * @param binary True for binary files.
+     */
+    public void setBinary(boolean binary) {
+        this.binary = binary;
+    }
+
+    /**
+     * Run the pipeline on the images.
+     *
+     * Each image is processed by a task of a pool of 'threads' threads,
+     * with its own pipeline.
+     *
+     * @param inputs  The files to read.
+     * @param outputs The files to write (same order as 'inputs').
+     * @return        The number of images that failed (their error is printed on the error output).
+     * @throws InterruptedException If the thread is interrupted while waiting for the tasks.
+     */
+    public int run(File[] inputs, File[] outputs) throws InterruptedException {
+        SplittableRandom seeds = new SplittableRandom(seed);
+        final boolean binary = this.binary;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Long>> futures = new ArrayList<Future<Long>>();
+        try {
+            for (int i = 0; i < inputs.length; i++) {
+                final Pipeline pipeline = Pipeline.parse(rm, stages, seeds.nextLong());
+                final String input = inputs[i].getPath();
+                final String output = outputs[i].getPath();
+                futures.add(pool.submit(() -> pipeline.run(input, output, binary)));
+            }
+            int failed = 0;
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                }
+                catch (ExecutionException e) {
+                    failed++;
+                    System.err.println(inputs[i] + " : " + e.getCause());
+                }
+            }
+            return failed;
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Tell if the arguments are for the non-interactive command line (the first one is an option).
+     *
+     * @param args The arguments of the program.
+     * @return     True if 'main' must be used.
+     */
+    public static boolean accepts(String[] args) {
+        return args.length > 0 && args[0].startsWith("-");
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int r = -1;
+        String stages = null;
+        String input = null;
+        String output = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        boolean printMetrics = false;
+        boolean binary = false;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (option.equals("-m")) {
+                    printMetrics = true;
+                    continue;
+                }
+                if (option.equals("-b")) {
+                    binary = true;
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value of " + option + ".");
+                }
+                String value = args[++i];
+                switch (option) {
+                    case "-r":
+                        r = Integer.parseInt(value);
+                        break;
+                    case "-p":
+                        stages = value;
+                        break;
+                    case "-i":
+                        input = value;
+                        break;
+                    case "-o":
+                        output = value;
+                        break;
+                    case "-t":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "-s":
+                        seed = Long.parseLong(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option : " + option + ".");
+                }
+            }
+            if (r < 0 || stages == null || input == null || output == null) {
+                throw new IllegalArgumentException("The options -r, -p, -i and -o are needed.");
+            }
+            if (r > ReedMuller.MAX_RANG) {
+                throw new IllegalArgumentException("The rang must be between 0 and " + ReedMuller.MAX_RANG + " : " + r + ".");
+            }
+        }
+        catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        // List the images.
+        File in = new File(input);
+        File out = new File(output);
+        File[] inputs;
+        File[] outputs;
+        if (in.isDirectory()) {
+            inputs = in.listFiles(file -> file.isFile() && !file.isHidden());
+            if (inputs == null) {
+                throw new IOException("Can't list " + in + ".");
+            }
+            if (inputs.length == 0) {
+                System.err.println("No file in " + in + ".");
+                System.exit(2);
+                return;
+            }
+            Arrays.sort(inputs);
+            if (!out.isDirectory() && !out.mkdirs()) {
+                throw new IOException("Can't create " + out + ".");
+            }
+            outputs = new File[inputs.length];
+            for (int i = 0; i < inputs.length; i++) {
+                outputs[i] = new File(out, inputs[i].getName());
+            }
+        }
+        else {
+            inputs = new File[] {in};
+            outputs = new File[] {out};
+        }
+
+        ReedMuller rm = new ReedMuller(r);
+        StripedMetrics metrics = new StripedMetrics();
+        if (printMetrics) {
+            rm.setMetrics(metrics);
+        }
+        Batch batch;
+        try {
+            batch = new Batch(rm, stages, threads, seed);
+            batch.setBinary(binary);
+        }
+        catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        long start = System.nanoTime();
+        int failed = batch.run(inputs, outputs);
+        long millis = (System.nanoTime() - start) / 1000000;
+        System.err.println((inputs.length - failed) + " image(s) processed, " + failed + " failed, in " + millis + " ms.");
+        if (printMetrics) {
+            System.err.println(metrics.toJson());
+        }
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package CodeRM;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+import Alteration.Alteration;
+
+/**
+ * Client of a 'CodecServer'.
+ *
+ * A client has one connection and must be used by one thread only.
+ *
+ * Usage : java CodeRM.CodecClient r clients requests words
+ *  Starts a server on a free port of the loopback address, then 'clients' threads send
+ *  'requests' requests of 'words' altered words each, and prints the durations of the requests.
+ */
+public class CodecClient implements Closeable {
+
+    private Socket socket;
+    private DataInputStream in;
+    private DataOutputStream out;
+    private int r;
+    private int words;
+
+    /**
+     * Connect to a server of the machine.
+     *
+     * @param port The port of the server on the loopback address.
+     * @throws IOException If the server can't be reached.
+     */
+    public CodecClient(int port) throws IOException {
+        socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+        out.writeByte(CodecServer.INFO);
+        out.writeInt(0);
+        out.flush();
+        status();
+        r = in.readInt();
+        words = ((1 << r) + 63) >>> 6;
+    }
+
+    /**
+     * Get the rang of the code of the server.
+     */
+    public int getRang() {
+        return r;
+    }
+
+    /**
+     * Encode words.
+     *
+     * @param messages The words (r + 1 bits).
+     * @return         The encoded words, 'words' longs per word (see 'ReedMuller.getWords()').
+     * @throws IOException If the request fails.
+     */
+    public long[] encode(int[] messages) throws IOException {
+        out.writeByte(CodecServer.ENCODE);
+        out.writeInt(messages.length);
+        for (int message : messages) {
+            out.writeInt(message);
+        }
+        out.flush();
+        status();
+        return readLongs(in.readInt() * words);
+    }
+
+    /**
+     * Unalter and decode words.
+     *
+     * @param codes The altered words, 'words' longs per word.
+     * @return      The decoded words.
+     * @throws IOException If the request fails.
+     */
+    public int[] decode(long[] codes) throws IOException {
+        send(CodecServer.DECODE, codes);
+        int[] messages = new int[in.readInt()];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = in.readInt();
+        }
+        return messages;
+    }
+
+    /**
+     * Unalter words.
+     *
+     * @param codes The altered words, 'words' longs per word.
+     * @return      The unaltered words.
+     * @throws IOException If the request fails.
+     */
+    public long[] unalter(long[] codes) throws IOException {
+        send(CodecServer.UNALTER, codes);
+        return readLongs(in.readInt() * words);
+    }
+
+    /**
+     * Get the metrics of the server in JSON.
+     *
+     * @throws IOException If the request fails.
+     */
+    public String stats() throws IOException {
+        out.writeByte(CodecServer.STATS);
+        out.writeInt(0);
+        out.flush();
+        status();
+        return in.readUTF();
+    }
+
+    /**
+     * Send a request with encoded words and read the status of the response.
+     */
+    private void send(byte operation, long[] codes) throws IOException {
+        out.writeByte(operation);
+        out.writeInt(codes.length / words);
+        for (long code : codes) {
+            out.writeLong(code);
+        }
+        out.flush();
+        status();
+    }
+
+    /**
+     * Read the status of a response.
+     *
+     * @throws IOException With the message of the server if the status is ERROR.
+     */
+    private void status() throws IOException {
+        if (in.readByte() != CodecServer.OK) {
+            throw new IOException(in.readUTF());
+        }
+    }
+
+    /**
+     * Read longs.
+     */
+    private long[] readLongs(int count) throws IOException {
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = in.readLong();
+        }
+        return values;
+    }
+
+    /**
+     * Close the connection.
+     */
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int r = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        final int requests = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        final int count = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+
+        final ReedMuller rm = new ReedMuller(r);
+        final CodecServer server = new CodecServer(rm, 0);
+        Thread[] threads = new Thread[clients];
+        final long[] errors = new long[clients];
+        long start = System.nanoTime();
+        for (int t = 0; t < clients; t++) {
+            final int index = t;
+            threads[t] = new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(index);
+                Alteration channel = new Alteration(0.05, index);
+                int[] messages = new int[count];
+                try (CodecClient client = new CodecClient(server.getPort())) {
+                    for (int i = 0; i < requests; i++) {
+                        for (int k = 0; k < count; k++) {
+                            messages[k] = random.nextInt(2 << r);
+                        }
+                        long[] codes = rm.encode(messages);
+                        channel.alter(codes, 0, count, rm.getWords(), rm.getLength());
+                        int[] decoded = client.decode(codes);
+                        for (int k = 0; k < count; k++) {
+                            if (decoded[k] != messages[k]) {
+                                errors[index]++;
+                            }
+                        }
+                    }
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            threads[t].start();
+        }
+        long wrong = 0;
+        for (int t = 0; t < clients; t++) {
+            threads[t].join();
+            wrong += errors[t];
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format(Locale.ROOT,
+                "r=%d clients=%d requests=%d words/request=%d : %.0f requests/s, word errors=%d, p50=%.1f us, p99=%.1f us",
+                r, clients, clients * requests, count, clients * requests / seconds, wrong,
+                server.getPercentile(Metrics.Operation.DECODE, 0.5), server.getPercentile(Metrics.Operation.DECODE, 0.99)));
+        try (CodecClient client = new CodecClient(server.getPort())) {
+            System.out.println(client.stats());
+        }
+        server.close();
+    }
+}
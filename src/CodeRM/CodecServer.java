@@ -0,0 +1,462 @@
+package CodeRM;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server encoding and decoding words for other processes of the machine.
+ *
+ * The server listens on the loopback address only. Each connection is handled by
+ * its own thread : a virtual thread if the Java version has them (21 and later),
+ * a platform thread otherwise. The requests to unalter and decode words are put
+ * in a queue, the worker threads take the requests waiting in the queue together
+ * (up to 'BATCH_WORDS' words) and correct them with one call to 'ReedMuller.unalterBatch'.
+ * So small requests sent at the same time by several connections are corrected by blocks.
+ *
+ * Protocol (all values in big-endian, see 'CodecClient') : a connection sends requests
+ * one after the other, each request gets its response before the next one is read.
+ *
+ *  Request  : byte operation, int count, then the values :
+ *              - ENCODE : 'count' words (int).
+ *              - DECODE, UNALTER : 'count' encoded words ('getWords()' longs each).
+ *              - INFO, STATS : no value ('count' is 0).
+ *  Response : byte status (OK or ERROR), then :
+ *              - ERROR : the message (modified UTF-8), the connection is closed.
+ *              - ENCODE, UNALTER : int count, 'count' encoded words ('getWords()' longs each).
+ *              - DECODE : int count, 'count' decoded words (int), same as 'unalterDecodeWord'.
+ *              - INFO : int r.
+ *              - STATS : the metrics in JSON (modified UTF-8), see 'StripedMetrics.toJson',
+ *                        with the percentiles of the durations of the requests.
+ *
+ * The duration of each request (from the end of its reading to the end of the writing
+ * of its response) is recorded, see 'getMetrics()' and 'getPercentile'.
+ *
+ * Usage : java CodeRM.CodecServer r [port [workers]]
+ */
+public class CodecServer implements Closeable {
+
+    // Operations.
+    public static final byte ENCODE = 1;
+    public static final byte DECODE = 2;
+    public static final byte UNALTER = 3;
+    public static final byte INFO = 4;
+    public static final byte STATS = 5;
+
+    // Status of a response.
+    public static final byte OK = 0;
+    public static final byte ERROR = 1;
+
+    // Maximal number of words of a request.
+    public static final int MAX_COUNT = 1 << 20;
+
+    // Maximal number of longs of the encoded words of a request (128 MB, limits the big r).
+    public static final int MAX_LONGS = 1 << 24;
+
+    // Maximal number of words corrected together by a worker (fewer if r > 10, see 'ReedMuller.chunkSize').
+    public static final int BATCH_WORDS = 4096;
+
+    private ReedMuller rm;
+    private ServerSocket server;
+    private ThreadFactory connectionThreads;
+    private Thread acceptor;
+    private Thread[] workers;
+    private volatile boolean running = true;
+
+    // Requests to unalter and decode, waiting for a worker.
+    private BlockingQueue<Request> queue = new LinkedBlockingQueue<Request>();
+
+    // Open connections, closed with the server.
+    private Set<Socket> connections = ConcurrentHashMap.newKeySet();
+
+    // Durations of the requests.
+    private StripedMetrics metrics = new StripedMetrics();
+
+    /**
+     * A request to unalter and decode words, waiting for a worker.
+     */
+    private static class Request {
+        final long[] codes;
+        final int count;
+        final int[] messages;
+        final CompletableFuture<int[]> done = new CompletableFuture<int[]>();
+
+        Request(long[] codes, int count) {
+            this.codes = codes;
+            this.count = count;
+            this.messages = new int[count];
+        }
+    }
+
+    /**
+     * Start a server.
+     *
+     * @param rm      The code to use.
+     * @param port    The port on the loopback address (0 for any free port, see 'getPort()').
+     * @param workers The number of worker threads correcting the words.
+     * @throws IOException If the port can't be opened.
+     */
+    public CodecServer(ReedMuller rm, int port, int workers) throws IOException {
+        if (workers < 1) {
+            throw new IllegalArgumentException("The number of workers must be at least 1.");
+        }
+        this.rm = rm;
+        this.server = new ServerSocket();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        this.connectionThreads = connectionThreads();
+
+        this.workers = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            this.workers[i] = new Thread(this::work, "codec-worker-" + i);
+            this.workers[i].setDaemon(true);
+            this.workers[i].start();
+        }
+        acceptor = new Thread(this::accept, "codec-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Start a server with a worker per processor.
+     *
+     * @param rm   The code to use.
+     * @param port The port on the loopback address (0 for any free port).
+     * @throws IOException If the port can't be opened.
+     */
+    public CodecServer(ReedMuller rm, int port) throws IOException {
+        this(rm, port, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Threads for the connections : virtual threads if available
+     * (found by reflection, to run on older versions), daemon threads otherwise.
+     */
+    private static ThreadFactory connectionThreads() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "codec-connection-", 0L);
+            return (ThreadFactory)builderClass.getMethod("factory").invoke(builder);
+        }
+        catch (ReflectiveOperationException | RuntimeException e) {
+            return task -> {
+                Thread thread = new Thread(task, "codec-connection");
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+
+    /**
+     * Get the port of the server.
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Get the code of the server.
+     */
+    public ReedMuller getReedMuller() {
+        return rm;
+    }
+
+    /**
+     * Get the durations of the requests ('Metrics.Operation' ENCODE, DECODE and UNALTER).
+     */
+    public StripedMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Get an upper bound of a percentile of the durations of the requests of an operation.
+     *
+     * @param operation The operation.
+     * @param p         The percentile (e.g. 0.5 or 0.99).
+     * @return          The duration, in microseconds.
+     */
+    public double getPercentile(Metrics.Operation operation, double p) {
+        return metrics.getLatencyPercentile(operation, p) / 1000.0;
+    }
+
+    /**
+     * Accept the connections until the server is closed.
+     */
+    private void accept() {
+        while (running) {
+            try {
+                final Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                connections.add(socket);
+                connectionThreads.newThread(() -> serve(socket)).start();
+            }
+            catch (IOException e) {
+                if (running) {
+                    System.err.println("CodecServer : " + e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Answer the requests of a connection until it is closed.
+     */
+    private void serve(Socket socket) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            int words = rm.getWords();
+            while (running) {
+                int operation = in.read();
+                if (operation < 0) {
+                    break;
+                }
+                int count = in.readInt();
+                if (count < 0 || count > MAX_COUNT || (long)count * words > MAX_LONGS) {
+                    error(out, "Invalid number of words : " + count + ".");
+                    break;
+                }
+                switch (operation) {
+                    case ENCODE: {
+                        int[] messages = new int[count];
+                        for (int i = 0; i < count; i++) {
+                            messages[i] = in.readInt();
+                        }
+                        long start = System.nanoTime();
+                        long[] codes = rm.encode(messages);
+                        out.writeByte(OK);
+                        out.writeInt(count);
+                        writeLongs(out, codes);
+                        out.flush();
+                        metrics.latency(Metrics.Operation.ENCODE, System.nanoTime() - start, count);
+                        break;
+                    }
+                    case DECODE:
+                    case UNALTER: {
+                        long[] codes = new long[count * words];
+                        for (int i = 0; i < codes.length; i++) {
+                            codes[i] = in.readLong();
+                        }
+                        long start = System.nanoTime();
+                        int[] messages = correct(codes, count);
+                        out.writeByte(OK);
+                        out.writeInt(count);
+                        if (operation == DECODE) {
+                            for (int i = 0; i < count; i++) {
+                                out.writeInt(messages[i]);
+                            }
+                        }
+                        else {
+                            writeLongs(out, rm.encode(messages));
+                        }
+                        out.flush();
+                        metrics.latency(operation == DECODE ? Metrics.Operation.DECODE : Metrics.Operation.UNALTER,
+                                System.nanoTime() - start, count);
+                        break;
+                    }
+                    case INFO:
+                        out.writeByte(OK);
+                        out.writeInt(rm.getRang());
+                        out.flush();
+                        break;
+                    case STATS:
+                        out.writeByte(OK);
+                        out.writeUTF(stats());
+                        out.flush();
+                        break;
+                    default:
+                        error(out, "Unknown operation : " + operation + ".");
+                        return;
+                }
+            }
+        }
+        catch (EOFException | SocketException e) {
+            // The connection is closed.
+        }
+        catch (IOException e) {
+            if (running) {
+                System.err.println("CodecServer : " + e);
+            }
+        }
+        finally {
+            connections.remove(socket);
+            try {
+                socket.close();
+            }
+            catch (IOException e) {
+                // Nothing to do.
+            }
+        }
+    }
+
+    /**
+     * Write an error.
+     */
+    private static void error(DataOutputStream out, String message) throws IOException {
+        out.writeByte(ERROR);
+        out.writeUTF(message);
+        out.flush();
+    }
+
+    /**
+     * Write longs.
+     */
+    private static void writeLongs(DataOutputStream out, long[] values) throws IOException {
+        for (long value : values) {
+            out.writeLong(value);
+        }
+    }
+
+    /**
+     * Unalter and decode words with the workers.
+     *
+     * @param codes The altered words.
+     * @param count The number of words.
+     * @return      The decoded words.
+     * @throws IOException If the server is closed or the correction failed.
+     */
+    private int[] correct(long[] codes, int count) throws IOException {
+        Request request = new Request(codes, count);
+        queue.add(request);
+        if (!running && queue.remove(request)) {
+            // Added after 'close' emptied the queue : no worker will take it.
+            throw new IOException("The server is closed.");
+        }
+        try {
+            return request.done.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Loop of a worker : take the waiting requests and correct them together.
+     */
+    private void work() {
+        int words = rm.getWords();
+        int batchWords = rm.chunkSize(BATCH_WORDS);
+        long[] codes = new long[batchWords * words];
+        int[] messages = new int[batchWords];
+        List<Request> batch = new ArrayList<Request>();
+        Request next = null;
+        while (running) {
+            try {
+                Request first = next != null ? next : queue.poll(100, TimeUnit.MILLISECONDS);
+                next = null;
+                if (first == null) {
+                    continue;
+                }
+                batch.clear();
+                batch.add(first);
+                if (first.count >= batchWords) {
+                    // Big request, corrected alone.
+                    rm.unalterBatch(first.codes, 0, first.messages, 0, first.count);
+                    first.done.complete(first.messages);
+                    continue;
+                }
+
+                // Add the waiting requests while they fit in the batch.
+                int total = first.count;
+                System.arraycopy(first.codes, 0, codes, 0, first.count * words);
+                while ((next = queue.poll()) != null && total + next.count <= batchWords) {
+                    System.arraycopy(next.codes, 0, codes, total * words, next.count * words);
+                    total += next.count;
+                    batch.add(next);
+                }
+
+                rm.unalterBatch(codes, 0, messages, 0, total);
+                int position = 0;
+                for (Request request : batch) {
+                    System.arraycopy(messages, position, request.messages, 0, request.count);
+                    position += request.count;
+                    request.done.complete(request.messages);
+                }
+            }
+            catch (InterruptedException e) {
+                break;
+            }
+            catch (RuntimeException e) {
+                for (Request request : batch) {
+                    request.done.completeExceptionally(e);
+                }
+                batch.clear();
+            }
+        }
+        if (next != null) {
+            next.done.completeExceptionally(new IOException("The server is closed."));
+        }
+        failWaiting();
+    }
+
+    /**
+     * Fail the requests waiting in the queue, once the server is closed.
+     */
+    private void failWaiting() {
+        Request request;
+        while ((request = queue.poll()) != null) {
+            request.done.completeExceptionally(new IOException("The server is closed."));
+        }
+    }
+
+    /**
+     * The metrics in JSON, with the percentiles of the durations in microseconds.
+     */
+    private String stats() {
+        StringBuilder json = new StringBuilder(metrics.toJson());
+        json.setLength(json.length() - 1);
+        json.append(",\"percentiles\":{");
+        Metrics.Operation[] operations = {Metrics.Operation.ENCODE, Metrics.Operation.DECODE, Metrics.Operation.UNALTER};
+        for (int i = 0; i < operations.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(String.format(Locale.ROOT, "\"%s\":{\"p50\":%.1f,\"p99\":%.1f}",
+                    operations[i].name().toLowerCase(), getPercentile(operations[i], 0.5), getPercentile(operations[i], 0.99)));
+        }
+        json.append("}}");
+        return json.toString();
+    }
+
+    /**
+     * Stop the server and close the connections.
+     */
+    public void close() throws IOException {
+        running = false;
+        server.close();
+        for (Socket socket : connections) {
+            socket.close();
+        }
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        failWaiting();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int r = Integer.parseInt(args[0]);
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        CodecServer server = new CodecServer(new ReedMuller(r), port, workers);
+        System.err.println("Listening on " + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort());
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,198 @@
+package CodeRM;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of the corrections : received word -> decoded word.
+ *
+ * Images contain a lot of identical pixels, so a lot of identical received words.
+ * With this cache, the correction (Hadamard transform) of a received word is
+ * computed once, then the decoded word is read in the cache.
+ *
+ * Only for encoded words of 64 bits or less (r <= 6).
+ *
+ *  - If r <= 4, all the received words (2^16 at most) have a place in a table.
+ *  - Otherwise, the cache has a bounded size. It is split in segments, each one
+ *    protected by its own lock. A received word can be stored in 'WAYS' places
+ *    of its segment. When they are all used, one of them is replaced with the
+ *    CLOCK algorithm : a word read since the last pass keeps its place once.
+ *
+ * The cache can be used by several threads. The numbers of hits and misses are counted.
+ */
+public class DecodeCache {
+
+    // Largest r for which all the received words have a place in the table.
+    private static final int FULL_TABLE_MAX_RANG = 4;
+
+    // Number of places a word can be stored in.
+    private static final int WAYS = 8;
+
+    // Number of segments (power of 2).
+    private static final int SEGMENTS = 16;
+
+    // Value of an empty place.
+    private static final int EMPTY = -1;
+
+    // Table of all the received words (r <= 4), EMPTY if not computed yet.
+    private int[] table;
+
+    // Segments of the bounded cache (r > 4).
+    private Segment[] segments;
+
+    private LongAdder hits = new LongAdder();
+    private LongAdder misses = new LongAdder();
+
+    /**
+     * A part of the bounded cache.
+     */
+    private static class Segment {
+        private long[] keys;
+        private int[] values;
+        private boolean[] referenced;
+        private int mask;
+
+        Segment(int size) {
+            keys = new long[size];
+            values = new int[size];
+            referenced = new boolean[size];
+            mask = size - 1;
+            Arrays.fill(values, EMPTY);
+        }
+
+        synchronized int get(long key, int hash) {
+            for (int w = 0; w < WAYS; w++) {
+                int i = (hash + w) & mask;
+                if (values[i] == EMPTY) {
+                    return EMPTY;
+                }
+                if (keys[i] == key) {
+                    referenced[i] = true;
+                    return values[i];
+                }
+            }
+            return EMPTY;
+        }
+
+        synchronized void put(long key, int hash, int value) {
+            // A free place, or the place of the same word.
+            for (int w = 0; w < WAYS; w++) {
+                int i = (hash + w) & mask;
+                if (values[i] == EMPTY || keys[i] == key) {
+                    keys[i] = key;
+                    values[i] = value;
+                    return;
+                }
+            }
+            // CLOCK : the first place not referenced, the referenced places get a second chance.
+            int victim = hash & mask;
+            for (int w = 0; w < 2 * WAYS; w++) {
+                int i = (hash + (w % WAYS)) & mask;
+                if (!referenced[i]) {
+                    victim = i;
+                    break;
+                }
+                referenced[i] = false;
+            }
+            keys[victim] = key;
+            values[victim] = value;
+            referenced[victim] = false;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param r        The rang of the code (r <= 6).
+     * @param capacity The maximal number of words in the cache (not used if r <= 4).
+     */
+    public DecodeCache(int r, int capacity) {
+        if (r > 6) {
+            throw new IllegalArgumentException("The cache is only for encoded words of 64 bits or less (r <= 6).");
+        }
+        if (r <= FULL_TABLE_MAX_RANG) {
+            table = new int[1 << (1 << r)];
+            Arrays.fill(table, EMPTY);
+        }
+        else {
+            int size = Integer.highestOneBit(Math.max(WAYS, (capacity + SEGMENTS - 1) / SEGMENTS));
+            segments = new Segment[SEGMENTS];
+            for (int s = 0; s < SEGMENTS; s++) {
+                segments[s] = new Segment(size);
+            }
+        }
+    }
+
+    /**
+     * Mix the bits of a received word.
+     */
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32));
+    }
+
+    /**
+     * Get the decoded word of a received word.
+     *
+     * @param code The received word.
+     * @return     The decoded word, or -1 if it is not in the cache.
+     */
+    public int get(long code) {
+        int value;
+        if (table != null) {
+            value = table[(int)code];
+        }
+        else {
+            int h = hash(code);
+            value = segments[(h >>> 28) & (SEGMENTS - 1)].get(code, h);
+        }
+        if (value == EMPTY) {
+            misses.increment();
+        }
+        else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Put the decoded word of a received word in the cache.
+     *
+     * @param code    The received word.
+     * @param message The decoded word.
+     */
+    public void put(long code, int message) {
+        if (table != null) {
+            table[(int)code] = message;
+        }
+        else {
+            int h = hash(code);
+            segments[(h >>> 28) & (SEGMENTS - 1)].put(code, h, message);
+        }
+    }
+
+    /**
+     * Get the number of words found in the cache.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of words not found in the cache.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the part of the words found in the cache.
+     *
+     * @return The number of hits divided by the number of accesses (0 if no access).
+     */
+    public double getHitRate() {
+        long h = getHits();
+        long total = h + getMisses();
+        return total == 0 ? 0 : (double)h / total;
+    }
+}
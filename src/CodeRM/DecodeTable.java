@@ -0,0 +1,131 @@
+package CodeRM;
+
+/**
+ * Tables to unalter and decode a received word without computing the Hadamard transform.
+ *
+ *  - If r <= 4, the table gives the decoded word of each of the 2^(2^r) received words
+ *    (65536 bytes for r = 4) : decoding is one access to the table.
+ *
+ *  - If r = 5, the table of all the received words would need 2^32 entries, and a table
+ *    of the syndromes 2^26 coset leaders of 32 bits (256 MB). Instead, the table gives the
+ *    Hadamard transform of each half of 16 bits (16 values between -16 and 16, 1 MB).
+ *    The transform of the word is computed from the transforms of its two halves :
+ *
+ *      F(j) = Flow(j) + Fhigh(j)   and   F(j + 16) = Flow(j) - Fhigh(j)   for j < 16
+ *
+ *    so decoding is two accesses to the table and 32 additions.
+ *
+ * The result is the same as with the transform (same word if several are at the same distance).
+ * The tables are built once and shared by all the instances with the same r.
+ */
+public class DecodeTable {
+
+    // Largest r with a table.
+    public static final int MAX_RANG = 5;
+
+    // Largest r with a table of all the received words.
+    private static final int FULL_TABLE_MAX_RANG = 4;
+
+    // Tables already built, by rang.
+    private static final DecodeTable[] TABLES = new DecodeTable[MAX_RANG + 1];
+
+    private int r;
+
+    // Decoded words of all the received words (r <= 4) or transforms of the halves (r = 5).
+    private byte[] table;
+
+    /**
+     * Get the table of a rang, built at the first call.
+     *
+     * @param r The rang (r <= 5).
+     * @return  The table.
+     */
+    public static synchronized DecodeTable get(int r) {
+        if (r < 1 || r > MAX_RANG) {
+            throw new IllegalArgumentException("Decoding by table is only for 1 <= r <= " + MAX_RANG + ".");
+        }
+        if (TABLES[r] == null) {
+            TABLES[r] = new DecodeTable(r);
+        }
+        return TABLES[r];
+    }
+
+    /**
+     * Build the table.
+     */
+    private DecodeTable(int r) {
+        this.r = r;
+        if (r <= FULL_TABLE_MAX_RANG) {
+            ReedMuller rm = new ReedMuller(r);
+            table = new byte[1 << (1 << r)];
+            for (int code = 0; code < table.length; code++) {
+                table[code] = (byte)rm.decodeWord(rm.unalterWord(code));
+            }
+        }
+        else {
+            table = new byte[(1 << 16) * 16];
+            int[] F = new int[16];
+            for (int half = 0; half < (1 << 16); half++) {
+                for (int i = 0; i < 16; i++) {
+                    F[i] = 1 - 2 * ((half >>> i) & 1);
+                }
+                for (int step = 1; step < 16; step <<= 1) {
+                    for (int i = 0; i < 16; i += step << 1) {
+                        for (int j = i; j < i + step; j++) {
+                            int a = F[j];
+                            int b = F[j + step];
+                            F[j] = a + b;
+                            F[j + step] = a - b;
+                        }
+                    }
+                }
+                for (int j = 0; j < 16; j++) {
+                    table[(half << 4) + j] = (byte)F[j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Unalter and decode a received word.
+     *
+     * @param code The received word (2^r bits).
+     * @return     The decoded word.
+     */
+    public int decode(long code) {
+        if (r <= FULL_TABLE_MAX_RANG) {
+            return table[(int)code & ((1 << (1 << r)) - 1)];
+        }
+        int low = ((int)code & 0xffff) << 4;
+        int high = ((int)(code >>> 16) & 0xffff) << 4;
+
+        // Maximum in absolute value in the low half and in the high half (first one if several).
+        int maxLow = -1;
+        int posLow = 0;
+        int valueLow = 0;
+        int maxHigh = -1;
+        int posHigh = 0;
+        int valueHigh = 0;
+        for (int j = 0; j < 16; j++) {
+            int a = table[low + j];
+            int b = table[high + j];
+            int sum = a + b;
+            int difference = a - b;
+            if (Math.abs(sum) > maxLow) {
+                maxLow = Math.abs(sum);
+                posLow = j;
+                valueLow = sum;
+            }
+            if (Math.abs(difference) > maxHigh) {
+                maxHigh = Math.abs(difference);
+                posHigh = j + 16;
+                valueHigh = difference;
+            }
+        }
+        int posMax = maxLow >= maxHigh ? posLow : posHigh;
+        int valueMax = maxLow >= maxHigh ? valueLow : valueHigh;
+
+        // If the maximum is negative, the last bit is 1.
+        return valueMax < 0 ? posMax + 32 : posMax;
+    }
+}
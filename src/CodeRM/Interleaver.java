@@ -0,0 +1,106 @@
+package CodeRM;
+
+/**
+ * Block interleaver of encoded words.
+ *
+ * The bits of 'depth' encoded words are sent column by column : first the bit 0 of
+ * each word, then the bit 1 of each word, ... So a burst of b flipped bits on the
+ * channel is spread over the words of the block, each word gets about b / depth
+ * flipped bits instead of one word getting all of them. Up to 'depth' * (2^(r-2) - 1)
+ * consecutive flipped bits can be corrected, against 2^(r-2) - 1 without interleaving.
+ *
+ * The words are in a 'long[]', 'words' longs per word (see 'ReedMuller').
+ * The bit p of the block (p = i * depth + d for the bit i of the word d) is stored
+ * as the bit (p % 2^r) of the word (p / 2^r) of the block, so the interleaved words
+ * take the same place as the encoded words. The last block can be smaller than 'depth'.
+ *
+ * Example : encode, interleave, alter, deinterleave and decode an image.
+ *
+ *      Interleaver interleaver = new Interleaver(rm, 16);
+ *      long[] codes = interleaver.interleave(rm.encode(pixels));
+ *      channel.alter(codes, 0, pixels.length, rm.getWords(), rm.getLength());
+ *      int[] decoded = rm.unalterBatch(interleaver.deinterleave(codes));
+ */
+public class Interleaver {
+
+    private int depth;
+    private int length;
+    private int words;
+
+    /**
+     * Constructor.
+     *
+     * @param rm    The code of the words.
+     * @param depth The number of words of a block (1 : no interleaving).
+     */
+    public Interleaver(ReedMuller rm, int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("The depth must be at least 1.");
+        }
+        this.depth = depth;
+        this.length = rm.getLength();
+        this.words = rm.getWords();
+    }
+
+    /**
+     * Get the number of words of a block.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Interleave encoded words.
+     *
+     * @param codes The encoded words, 'getWords()' longs per word.
+     * @return      The interleaved words.
+     */
+    public long[] interleave(long[] codes) {
+        long[] output = new long[codes.length];
+        permute(codes, output, true);
+        return output;
+    }
+
+    /**
+     * Deinterleave words (inverse of 'interleave').
+     *
+     * @param codes The interleaved words.
+     * @return      The encoded words.
+     */
+    public long[] deinterleave(long[] codes) {
+        long[] output = new long[codes.length];
+        permute(codes, output, false);
+        return output;
+    }
+
+    /**
+     * Move the bits of each block.
+     *
+     * @param input      The words to read.
+     * @param output     The words to write (all the bits at 0).
+     * @param interleave True to interleave, false to deinterleave.
+     */
+    private void permute(long[] input, long[] output, boolean interleave) {
+        int count = input.length / words;
+        for (int first = 0; first < count; first += depth) {
+            int block = Math.min(depth, count - first);
+            int base = first * words;
+            for (int d = 0; d < block; d++) {
+                for (int i = 0; i < length; i++) {
+                    // Position of the bit i of the word d, in the words and in the block.
+                    int word = base + d * words + (i >>> 6);
+                    long p = (long)i * block + d;
+                    int sent = base + (int)(p / length) * words + (int)((p % length) >>> 6);
+                    int bit = i & 63;
+                    int sentBit = (int)(p % length) & 63;
+                    if (interleave) {
+                        output[sent] |= ((input[word] >>> bit) & 1) << sentBit;
+                    }
+                    else {
+                        output[word] |= ((input[sent] >>> sentBit) & 1) << bit;
+                    }
+                }
+            }
+        }
+    }
+}
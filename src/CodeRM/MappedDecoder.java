@@ -0,0 +1,128 @@
+package CodeRM;
+
+import Utilities.PGMWriter;
+import Utilities.PackedCodewords;
+import Utilities.ParsePGM;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+
+/**
+ * Class to unalter and decode a file of encoded words bigger than the memory.
+ *
+ * The file, in the packed format (see 'PackedCodewords'), is mapped in memory
+ * window by window. The words of a window are copied by chunks and unaltered and
+ * decoded with 'ReedMuller.unalterBatch', then the pixels are written in a buffered PGM file before the next window is mapped.
+ * Only one window and its pixels are in memory at a time, the reading of the
+ * file is left to the page cache of the system.
+ * The comments stored in the packed file are written in the header of the image.
+ */
+public class MappedDecoder {
+
+    // Default size of a window, in bytes.
+    public static final int WINDOW_SIZE = 1 << 26;
+
+    // Number of words corrected by a call to 'unalterBatch' (fewer if r > 10, see 'ReedMuller.chunkSize').
+    private static final int CHUNK_WORDS = 4096;
+
+    private ReedMuller rm;
+    private int windowWords;
+    private boolean parallel;
+
+    /**
+     * Constructor with the code and the size of the windows.
+     *
+     * @param rm         The code of the file.
+     * @param windowSize The size of a window, in bytes.
+     * @param parallel   True to process each window on all the processors.
+     */
+    public MappedDecoder(ReedMuller rm, int windowSize, boolean parallel) {
+        this.rm = rm;
+        this.parallel = parallel;
+        // Number of words in a window, multiple of 8 to start each window on a byte.
+        long words = ((long)windowSize << 3) >>> rm.getRang();
+        this.windowWords = (int)Math.max(8, Math.min(words, Integer.MAX_VALUE - 7) & ~7L);
+    }
+
+    /**
+     * Constructor with the code, windows of 'WINDOW_SIZE' bytes.
+     *
+     * @param rm The code of the file.
+     */
+    public MappedDecoder(ReedMuller rm) {
+        this(rm, WINDOW_SIZE, false);
+    }
+
+    /**
+     * Unalter and decode a packed file in a PGM file.
+     * If the output file already exists, it is replaced.
+     *
+     * @param input  The file of encoded words, in the packed format.
+     * @param output The decoded image.
+     * @return       The number of words decoded.
+     * @throws IOException If a file can't be read or written.
+     */
+    public long decode(String input, String output) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(input), StandardOpenOption.READ);
+        try {
+            PackedCodewords window = PackedCodewords.map(channel, 0, windowWords);
+            if (window.getRang() != rm.getRang()) {
+                throw new IllegalArgumentException("The file is encoded with r = " + window.getRang()
+                        + ", not " + rm.getRang() + ".");
+            }
+            PGMWriter writer = PGMWriter.create(output,
+                    ParsePGM.header(window.getWidth(), window.getHeight(), window.getMaxGray(), false, window.getComments()));
+            int[] pixels = new int[Math.min(windowWords, window.getCount())];
+            int count = window.getCount();
+            try {
+                for (int first = 0; first < count; first += windowWords) {
+                    if (first > 0) {
+                        window = PackedCodewords.map(channel, first, windowWords);
+                    }
+                    int size = window.getSize();
+                    if (parallel) {
+                        final PackedCodewords w = window;
+                        final int[] p = pixels;
+                        int chunk = CHUNK_WORDS;
+                        IntStream.range(0, (size + chunk - 1) / chunk).parallel().forEach(c ->
+                                decode(w, p, c * chunk, Math.min(size, (c + 1) * chunk)));
+                    }
+                    else {
+                        decode(window, pixels, 0, size);
+                    }
+                    for (int i = 0; i < size; i++) {
+                        writer.writeLong(pixels[i]);
+                    }
+                }
+            }
+            finally {
+                writer.close();
+            }
+            return count;
+        }
+        finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Unalter and decode the words of a window, from 'from' (included) to 'to' (excluded).
+     * The numbers are relative to the first word of the window.
+     */
+    private void decode(PackedCodewords window, int[] pixels, int from, int to) {
+        int first = window.getFirst();
+        int words = rm.getWords();
+        int chunk = rm.chunkSize(CHUNK_WORDS);
+        long[] codes = new long[Math.min(chunk, to - from) * words];
+        for (int start = from; start < to; start += chunk) {
+            int size = Math.min(chunk, to - start);
+            for (int i = 0; i < size; i++) {
+                window.get(first + start + i, codes, i * words);
+            }
+            rm.unalterBatch(codes, 0, pixels, start, size);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package CodeRM;
+
+/**
+ * Instrumentation of the codec : numbers of words, corrections and durations.
+ *
+ * An instance is given to 'ReedMuller.setMetrics' or 'Alteration.setMetrics'.
+ * By default, 'NONE' is used : it does nothing and 'isEnabled()' returns false,
+ * so the codec doesn't even compute the values to record.
+ * 'StripedMetrics' counts the values and can be dumped as JSON or read through JMX.
+ *
+ * The methods can be called by several threads at the same time.
+ */
+public interface Metrics {
+
+    /**
+     * Operations with a measured duration.
+     */
+    enum Operation {
+        ENCODE,
+        ALTER,
+        UNALTER,
+        DECODE
+    }
+
+    /**
+     * Metrics doing nothing.
+     */
+    Metrics NONE = new Metrics() {
+        public boolean isEnabled() {
+            return false;
+        }
+
+        public void encoded(long count) {
+        }
+
+        public void decoded(long count) {
+        }
+
+        public void corrected(int flips, boolean ambiguous, boolean uncorrectable) {
+        }
+
+        public void altered(long count, long flips) {
+        }
+
+        public void latency(Operation operation, long nanos, long count) {
+        }
+    };
+
+    /**
+     * Tell if the values must be recorded.
+     *
+     * @return False if all the other methods do nothing.
+     */
+    boolean isEnabled();
+
+    /**
+     * Record encoded words.
+     *
+     * @param count The number of words.
+     */
+    void encoded(long count);
+
+    /**
+     * Record decoded words.
+     *
+     * @param count The number of words.
+     */
+    void decoded(long count);
+
+    /**
+     * Record an unaltered word.
+     *
+     * @param flips         The number of bits changed by the correction
+     *                      (distance between the received word and the nearest encoded word).
+     * @param ambiguous     True if several encoded words were the nearest (the first one is kept).
+     * @param uncorrectable True if 'flips' is more than the code can correct (2^(r-2) - 1) :
+     *                      the result may be another encoded word than the one sent.
+     */
+    void corrected(int flips, boolean ambiguous, boolean uncorrectable);
+
+    /**
+     * Record altered words.
+     *
+     * @param count The number of words.
+     * @param flips The number of bits flipped in these words.
+     */
+    void altered(long count, long flips);
+
+    /**
+     * Record the duration of an operation on several words (e.g. an image).
+     *
+     * @param operation The operation.
+     * @param nanos     The duration, in nanoseconds.
+     * @param count     The number of words processed.
+     */
+    void latency(Operation operation, long nanos, long count);
+}
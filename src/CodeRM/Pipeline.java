@@ -0,0 +1,449 @@
+package CodeRM;
+
+import Alteration.Alteration;
+import Utilities.PGMReader;
+import Utilities.PGMWriter;
+import Utilities.ParsePGM;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Class to chain operations on an image, value by value.
+ *
+ * Each value of the image is read, goes through all the stages
+ * (encode, alter, unalter, decode) and is written directly in the output.
+ * Only one value at a time is in memory, in a buffer of fixed size,
+ * so the cost per pixel doesn't depend of the size of the image.
+ *
+ * Example : encode, alter and decode an image.
+ *
+ *      ReedMuller rm = new ReedMuller(5);
+ *      Pipeline pipeline = new Pipeline(Pipeline.encode(rm), Pipeline.alter(rm, 0.07),
+ *                                       Pipeline.unalter(rm), Pipeline.decode(rm));
+ *      pipeline.run("lena_128x128_64.pgm", "lena_out.pgm");
+ *
+ * The input can be a text (P2) or a binary (P5) PGM file. The output is a text file,
+ * or a binary file with 'run(input, output, true)' if its values fit the gray level (e.g. decoded pixels).
+ *
+ * A value is stored in a 'long[]' (bit i at position (i % 64) of the element (i / 64)).
+ *
+ * With metrics (see 'setMetrics'), the duration of each stage is recorded
+ * by blocks of 'LATENCY_BLOCK' values (and the last values of the image).
+ */
+public class Pipeline {
+
+    /**
+     * An operation on a value.
+     */
+    public interface Stage {
+
+        /**
+         * Number of bits of a value before this stage (0 if it is a pixel).
+         */
+        int inputBits();
+
+        /**
+         * Number of longs of a value after this stage.
+         */
+        int outputWords();
+
+        /**
+         * Apply the operation on the value, in place.
+         *
+         * @param value The value, in an array big enough for the input and the output.
+         */
+        void apply(long[] value);
+
+        /**
+         * Operation of this stage, for the durations recorded in the metrics.
+         *
+         * @return The operation, null if the duration of this stage is not recorded.
+         */
+        default Metrics.Operation operation() {
+            return null;
+        }
+    }
+
+    // Number of values between two records of the durations of the stages.
+    public static final int LATENCY_BLOCK = 4096;
+
+    private Stage[] stages;
+
+    // Instrumentation (see 'setMetrics').
+    private Metrics metrics = Metrics.NONE;
+
+    // Number of longs of the biggest value in the pipeline.
+    private int maxWords;
+
+    /**
+     * Constructor with the stages, in the order they are applied.
+     *
+     * @param stages The stages.
+     */
+    public Pipeline(Stage... stages) {
+        if (stages.length == 0) {
+            throw new IllegalArgumentException("A pipeline needs at least one stage.");
+        }
+        this.stages = stages.clone();
+        this.maxWords = 1;
+        for (Stage stage : stages) {
+            maxWords = Math.max(maxWords, Math.max(wordsOf(stage.inputBits()), stage.outputWords()));
+        }
+    }
+
+    /**
+     * Record the durations of the stages in 'metrics'.
+     *
+     * @param metrics The metrics, 'Metrics.NONE' (or null) to record nothing.
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics != null ? metrics : Metrics.NONE;
+    }
+
+    /**
+     * Number of longs needed to store a value of 'bits' bits.
+     */
+    private static int wordsOf(int bits) {
+        return Math.max(1, (bits + 63) >>> 6);
+    }
+
+    /**
+     * Run the pipeline on a file, the output is a text file.
+     * If the output file already exists, it is replaced.
+     *
+     * @param input  The file to read.
+     * @param output The file to write.
+     * @return       The number of values processed.
+     * @throws IOException If a file can't be read or written.
+     */
+    public long run(String input, String output) throws IOException {
+        return run(input, output, false);
+    }
+
+    /**
+     * Run the pipeline on a file.
+     * If the output file already exists, it is replaced.
+     *
+     * @param input  The file to read (text or binary).
+     * @param output The file to write.
+     * @param binary True to write a binary file (P5), false for a text file (P2).
+     * @return       The number of values processed.
+     * @throws IOException If a file can't be read or written, or a value doesn't fit in a binary file.
+     */
+    public long run(String input, String output, boolean binary) throws IOException {
+        PGMReader reader = PGMReader.open(input);
+        try {
+            PGMWriter writer = PGMWriter.create(output, ParsePGM.header(reader.getHeader(), binary));
+            try {
+                return run(reader, writer);
+            }
+            finally {
+                writer.close();
+            }
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Run the pipeline on all the values of a reader.
+     *
+     * The header must already be written.
+     * The writer is not closed.
+     *
+     * @param reader The reader, positioned after the header.
+     * @param writer The writer.
+     * @return       The number of values processed.
+     * @throws IOException If a value can't be read or written.
+     */
+    public long run(PGMReader reader, PGMWriter writer) throws IOException {
+        long[] value = new long[maxWords];
+        int bits = stages[0].inputBits();
+        int words = wordsOf(bits);
+        int outputWords = stages[stages.length - 1].outputWords();
+        boolean measured = metrics.isEnabled();
+        long[] nanos = new long[stages.length];
+        int block = 0;
+        long count = 0;
+
+        while (reader.hasNext()) {
+            if (bits == 0) {
+                value[0] = reader.nextLong();
+            }
+            else {
+                reader.next(value, 0, words, bits);
+            }
+            if (measured) {
+                long time = System.nanoTime();
+                for (int s = 0; s < stages.length; s++) {
+                    stages[s].apply(value);
+                    long end = System.nanoTime();
+                    nanos[s] += end - time;
+                    time = end;
+                }
+                if (++block == LATENCY_BLOCK) {
+                    recordLatencies(nanos, block);
+                    block = 0;
+                }
+            }
+            else {
+                for (Stage stage : stages) {
+                    stage.apply(value);
+                }
+            }
+            writer.write(value, 0, outputWords);
+            count++;
+        }
+        if (block > 0) {
+            recordLatencies(nanos, block);
+        }
+        return count;
+    }
+
+    /**
+     * Record the durations of the stages on the last 'count' values, and reset them.
+     */
+    private void recordLatencies(long[] nanos, int count) {
+        for (int s = 0; s < stages.length; s++) {
+            Metrics.Operation operation = stages[s].operation();
+            if (operation != null) {
+                metrics.latency(operation, nanos[s], count);
+            }
+            nanos[s] = 0;
+        }
+    }
+
+    /**
+     * Build a pipeline from a list of stages separated by commas.
+     *
+     * Stages : "encode", "decode", "unalter", "alter:<line>" (e.g. "encode,alter:0.07,unalter,decode").
+     * The noise channels of the "alter" stages are seeded with numbers drawn from 'seed',
+     * in the order of the stages : the same seed gives the same alterations.
+     * They record in the metrics of 'rm', as the durations of the stages of the pipeline.
+     * An "unalter" stage followed by a "decode" stage is replaced by one 'unalterDecode' stage.
+     *
+     * @param rm     The code to use.
+     * @param stages The list of stages.
+     * @param seed   The seed of the noise channels.
+     * @return       The pipeline.
+     * @throws IllegalArgumentException If a stage is unknown, or can't follow the previous one.
+     */
+    public static Pipeline parse(ReedMuller rm, String stages, long seed) {
+        String[] names = stages.split(",");
+        List<Stage> result = new ArrayList<Stage>();
+        SplittableRandom seeds = new SplittableRandom(seed);
+        boolean encoded = false;
+        String previous = null;
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i].trim();
+            Stage stage;
+            if (name.equals("unalter") && i + 1 < names.length && names[i + 1].trim().equals("decode")) {
+                stage = unalterDecode(rm);
+                name = "unalter,decode";
+                i++;
+            }
+            else if (name.equals("encode")) {
+                stage = encode(rm);
+            }
+            else if (name.equals("decode")) {
+                stage = decode(rm);
+            }
+            else if (name.equals("unalter")) {
+                stage = unalter(rm);
+            }
+            else if (name.startsWith("alter:")) {
+                double line = Double.parseDouble(name.substring("alter:".length()));
+                Alteration channel = new Alteration(line, seeds.nextLong());
+                channel.setMetrics(rm.getMetrics());
+                stage = alter(rm, channel);
+            }
+            else {
+                throw new IllegalArgumentException("Unknown stage : " + name);
+            }
+            if (previous != null && (stage.inputBits() == 0) == encoded) {
+                throw new IllegalArgumentException("The stage " + name + " can't follow " + previous + ".");
+            }
+            result.add(stage);
+            encoded = !name.endsWith("decode");
+            previous = name;
+        }
+        Pipeline pipeline = new Pipeline(result.toArray(new Stage[result.size()]));
+        pipeline.setMetrics(rm.getMetrics());
+        return pipeline;
+    }
+
+    /**
+     * Stage to encode a pixel.
+     *
+     * @param rm The code to use.
+     * @return   The stage.
+     */
+    public static Stage encode(final ReedMuller rm) {
+        return new Stage() {
+            public int inputBits() {
+                return 0;
+            }
+
+            public int outputWords() {
+                return rm.getWords();
+            }
+
+            public void apply(long[] value) {
+                if (rm.getWords() == 1) {
+                    value[0] = rm.encodeWord((int)value[0]);
+                }
+                else {
+                    rm.encodeWord((int)value[0], value);
+                }
+            }
+
+            public Metrics.Operation operation() {
+                return Metrics.Operation.ENCODE;
+            }
+        };
+    }
+
+    /**
+     * Stage to decode an encoded word.
+     *
+     * @param rm The code to use.
+     * @return   The stage.
+     */
+    public static Stage decode(final ReedMuller rm) {
+        return new Stage() {
+            public int inputBits() {
+                return rm.getLength();
+            }
+
+            public int outputWords() {
+                return 1;
+            }
+
+            public void apply(long[] value) {
+                if (rm.getWords() == 1) {
+                    value[0] = rm.decodeWord(value[0]);
+                }
+                else {
+                    value[0] = rm.decodeWord(value);
+                }
+            }
+
+            public Metrics.Operation operation() {
+                return Metrics.Operation.DECODE;
+            }
+        };
+    }
+
+    /**
+     * Stage to unalter and decode an encoded word in one step
+     * (same as 'unalter' then 'decode', without building the unaltered word).
+     *
+     * @param rm The code to use.
+     * @return   The stage.
+     */
+    public static Stage unalterDecode(final ReedMuller rm) {
+        return new Stage() {
+            public int inputBits() {
+                return rm.getLength();
+            }
+
+            public int outputWords() {
+                return 1;
+            }
+
+            public void apply(long[] value) {
+                if (rm.getWords() == 1) {
+                    value[0] = rm.unalterDecodeWord(value[0]);
+                }
+                else {
+                    value[0] = rm.unalterDecodeWord(value);
+                }
+            }
+
+            public Metrics.Operation operation() {
+                return Metrics.Operation.UNALTER;
+            }
+        };
+    }
+
+    /**
+     * Stage to unalter an encoded word.
+     *
+     * @param rm The code to use.
+     * @return   The stage.
+     */
+    public static Stage unalter(final ReedMuller rm) {
+        return new Stage() {
+            public int inputBits() {
+                return rm.getLength();
+            }
+
+            public int outputWords() {
+                return rm.getWords();
+            }
+
+            public void apply(long[] value) {
+                if (rm.getWords() == 1) {
+                    value[0] = rm.unalterWord(value[0]);
+                }
+                else {
+                    rm.unalterWord(value, value);
+                }
+            }
+
+            public Metrics.Operation operation() {
+                return Metrics.Operation.UNALTER;
+            }
+        };
+    }
+
+    /**
+     * Stage to alter an encoded word.
+     *
+     * Each bit of the word is flipped with the probability 'line'
+     * (see 'Alteration(double, long)'), the generator is seeded with the time.
+     *
+     * @param rm    The code to use.
+     * @param line  The line that we want our words altered.
+     * @return      The stage.
+     */
+    public static Stage alter(ReedMuller rm, double line) {
+        return alter(rm, new Alteration(line, System.nanoTime()));
+    }
+
+    /**
+     * Stage to alter an encoded word with a noise channel.
+     *
+     * @param rm      The code to use.
+     * @param channel The noise channel, used by this stage only.
+     * @return        The stage.
+     */
+    public static Stage alter(final ReedMuller rm, final Alteration channel) {
+        return new Stage() {
+            public int inputBits() {
+                return rm.getLength();
+            }
+
+            public int outputWords() {
+                return rm.getWords();
+            }
+
+            public void apply(long[] value) {
+                if (rm.getWords() == 1) {
+                    value[0] = channel.alter(value[0], rm.getLength());
+                }
+                else {
+                    channel.alterWord(value, rm.getLength());
+                }
+            }
+
+            public Metrics.Operation operation() {
+                return Metrics.Operation.ALTER;
+            }
+        };
+    }
+}
@@ -1,16 +1,18 @@
 package CodeRM;
 
+import Utilities.CodewordBuffer;
 import Utilities.ParsePGM;
+import Utilities.PixelBuffer;
 import Alteration.Alteration;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.math.BigInteger;
+import java.util.stream.IntStream;
 
 /**
  * Class to implement the Reed-Muller code (RM(1, r) -> First order, length r).
  *
  * Reed-Muller code is a error-correcting code.
+ * For the codes of higher order RM(m, r), see 'ReedMullerRecursive'.
  *
  * Features :
  *
@@ -25,6 +27,19 @@ import java.math.BigInteger;
  * A word is represented by a Integer (Class 'BigInteger').
  * Methods of class 'BigInteger' can be used to access one specific bit.
  *
+ * The methods on 'BigInteger' are adapters over a primitive codec :
+ *  - A message (r + 1 bits) is an 'int'.
+ *  - A codeword (2^r bits) is a 'long' if r <= 6, a 'long[]' otherwise.
+ *    In a 'long[]', bit i is at position (i % 64) of the element (i / 64).
+ * The primitive methods don't allocate anything per word.
+ *
+ * r goes from 0 to 'MAX_RANG' (20) : an encoded word takes up to 2^20 bits (128 KB).
+ * The correction of a word takes O(r * 2^r) operations in an 'int[]' of 2^r values,
+ * allocated once per thread. The buffers of several words are limited to 'CHUNK_LONGS'
+ * longs (see 'chunkSize'). For r above about 10, the encoded words should be stored in
+ * the packed format (see 'PackedCodewords') : the conversion of a word of 2^r bits in
+ * decimal ('ParsePGM', 'PGMReader', 'PGMWriter') takes O(2^(2r)) operations.
+ *
  * Minimal distance is 2^(r-1) and the code can correct up to 2^(r-2) - 1
  *
  * Size of word before encoding :   r + 1
@@ -41,6 +56,28 @@ import java.math.BigInteger;
  *
  *  It has been done that way because of the 'Main.java', which was imposed and already done that way.
  *
+ *  - Images can also be encoded and decoded on arrays :
+ *    - Pixels in an 'int[]', read with 'ParsePGM.readPixels' from a text (P2) or binary (P5) file.
+ *    - Encoded words in a 'long[]' ('getWords()' longs per word), read with 'ParsePGM.readWords'.
+ *    Each word is independent, so 'unalterParallel' and 'decodeParallel' use all the processors.
+ *    'unalterBatch' corrects blocks of words at the same time and gives directly the decoded words.
+ *
+ *  - If r <= 5, the words can be unaltered with tables instead of the transform
+ *    (see 'Decoding.TABLE' and 'DecodeTable').
+ *
+ *  - A received word can also be given with soft values (one value per bit, see 'unalterSoft') :
+ *    positive for a 0, negative for a 1, the absolute value is the confidence (e.g. a log-likelihood ratio).
+ *
+ *  - Images can also be kept off-heap, in a 'PixelBuffer' and a 'CodewordBuffer' (2^r / 8 bytes
+ *    per encoded word), encoded, unaltered and decoded in place.
+ *
+ *  - Against bursts of errors, the encoded words of an image can be interleaved (see 'Interleaver').
+ *
+ *  - The numbers of words, the corrections and the durations of the operations on images
+ *    can be recorded (see 'setMetrics' and 'Metrics'). Nothing is recorded by default.
+ *    The operations on one word record no duration : their callers time them by blocks
+ *    of words (e.g. 'Pipeline').
+ *
  * @author  Axel Fahy
  * @author  Rudolf Höhn
  *
@@ -48,24 +85,931 @@ import java.math.BigInteger;
  */
 public class ReedMuller {
 
-    // Length of the code.
-    // Words will be of length r + 1.
-    // Encoded words will be of length 2^r.
-    private int r;
+    // Length of the code.
+    // Words will be of length r + 1.
+    // Encoded words will be of length 2^r.
+    private int r;
+
+    // Number of bits of an encoded word (2^r).
+    private int length;
+
+    // Number of longs needed to store an encoded word.
+    private int words;
+
+    // Largest rang supported.
+    public static final int MAX_RANG = 20;
+
+    // Number of words processed by a task in the parallel methods.
+    private static final int PARALLEL_CHUNK = 1024;
+
+    // Maximal number of longs of a buffer of several encoded words (512 KB).
+    public static final int CHUNK_LONGS = 1 << 16;
+
+    // Largest r for which all the encoded words are stored in 'codebook'.
+    private static final int CODEBOOK_MAX_RANG = 8;
+
+    // Lines of the encoding matrix, 'words' longs per line (r + 1 lines).
+    private final long[] rows;
+
+    // All the encoded words, 'words' longs per word (only if r <= 8, null otherwise).
+    private final long[] codebook;
+
+    // Buffer used by the correction, allocated once per thread.
+    private final ThreadLocal<int[]> scratch;
+
+    // Cache of the corrections, null if not used (see 'enableCache').
+    private DecodeCache cache;
+
+    // Buffer used by the correction of soft values, allocated once per thread.
+    private final ThreadLocal<float[]> softScratch;
+
+    // Maximal number of values in the buffer of the correction by block.
+    private static final int BATCH_SIZE = 1 << 16;
+
+    // Largest r for which the words are corrected by blocks (the keys of the maximum must fit on an int).
+    private static final int BATCH_MAX_RANG = 13;
+
+    // Number of words corrected at the same time by 'unalterBatch' (1 to 64).
+    private final int lanes;
+
+    // Buffer used by the correction by block, allocated once per thread.
+    private final ThreadLocal<int[]> batchScratch;
+
+    // Buffer receiving the encoded word compared by the metrics, allocated once per thread.
+    private final ThreadLocal<long[]> codeScratch;
+
+    /**
+     * Methods to unalter a word.
+     */
+    public enum Decoding {
+        // Hadamard transform of each word.
+        TRANSFORM,
+        // Tables computed once (r <= 5, see 'DecodeTable').
+        TABLE
+    }
+
+    // Table used to unalter the words, null if the transform is used.
+    private final DecodeTable decodeTable;
+
+    // Instrumentation (see 'setMetrics').
+    private Metrics metrics = Metrics.NONE;
+
+    // True if 'metrics' records the values.
+    private boolean measured;
+
+    /**
+     * Constructor with the rang.
+     */
+    public ReedMuller(int rang) {
+        this(rang, Decoding.TRANSFORM);
+    }
+
+    /**
+     * Constructor with the rang and the method to unalter the words.
+     *
+     * The tables are built once and shared by all the instances with the same r.
+     *
+     * @param rang     The rang r (0 to 'MAX_RANG').
+     * @param decoding TRANSFORM, or TABLE (only for r <= 5).
+     * @throws IllegalArgumentException If the rang is out of range.
+     */
+    public ReedMuller(int rang, Decoding decoding) {
+        if (rang < 0 || rang > MAX_RANG) {
+            throw new IllegalArgumentException("The rang must be between 0 and " + MAX_RANG + " : " + rang + ".");
+        }
+        this.r = rang;
+        this.length = 1 << rang;
+        this.words = (length + 63) >>> 6;
+        final int size = length;
+        this.scratch = ThreadLocal.withInitial(() -> new int[size]);
+        this.softScratch = ThreadLocal.withInitial(() -> new float[size]);
+        this.lanes = rang <= BATCH_MAX_RANG ? Math.min(64, BATCH_SIZE >>> rang) : 1;
+        final int batchSize = size * lanes + lanes;
+        this.batchScratch = ThreadLocal.withInitial(() -> new int[batchSize]);
+        final int codeWords = words;
+        this.codeScratch = ThreadLocal.withInitial(() -> new long[codeWords]);
+        this.rows = buildRows();
+        this.codebook = rang <= CODEBOOK_MAX_RANG ? buildCodebook() : null;
+        this.decodeTable = decoding == Decoding.TABLE ? DecodeTable.get(rang) : null;
+    }
+
+    /**
+     * Build the lines of the encoding matrix (see 'encode(BigInteger)').
+     *
+     * The line j < r has the bit i set if the bit j of i is set.
+     * The line r is fill with 1 values.
+     *
+     * @return The r + 1 lines, 'words' longs per line.
+     */
+    private long[] buildRows() {
+        long[] m = new long[(r + 1) * words];
+        for (int j = 0; j <= r; j++) {
+            for (int i = 0; i < length; i++) {
+                if (j == r || (i & (1 << j)) != 0) {
+                    m[j * words + (i >>> 6)] |= 1L << (i & 63);
+                }
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Build the table of all the encoded words.
+     *
+     * Each encoded word is the encoded word without its lowest bit set,
+     * xored with the line of the matrix corresponding to this bit.
+     *
+     * @return The 2^(r + 1) encoded words, 'words' longs per word.
+     */
+    private long[] buildCodebook() {
+        int count = 1 << (r + 1);
+        long[] table = new long[count * words];
+        for (int word = 1; word < count; word++) {
+            int previous = word & (word - 1);
+            int line = Integer.numberOfTrailingZeros(word);
+            for (int k = 0; k < words; k++) {
+                table[word * words + k] = table[previous * words + k] ^ rows[line * words + k];
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Get the rang of the code.
+     *
+     * @return The rang r.
+     */
+    public int getRang() {
+        return r;
+    }
+
+    /**
+     * Get the number of bits of an encoded word (2^r).
+     *
+     * @return The length of an encoded word.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Get the number of longs used to store an encoded word in a 'long[]'.
+     *
+     * @return The number of longs of an encoded word.
+     */
+    public int getWords() {
+        return words;
+    }
+
+    /**
+     * Get the number of encoded words of a buffer of several words,
+     * limited so that the buffer takes at most 'CHUNK_LONGS' longs.
+     *
+     * @param count The number of words wanted.
+     * @return      The number of words of the buffer (at least 1).
+     */
+    public int chunkSize(int count) {
+        return Math.max(1, Math.min(count, CHUNK_LONGS / words));
+    }
+
+    /**
+     * Record the values of the operations in 'metrics'.
+     *
+     * To call before the instance is shared between threads.
+     *
+     * @param metrics The metrics, 'Metrics.NONE' (or null) to record nothing.
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics != null ? metrics : Metrics.NONE;
+        this.measured = this.metrics.isEnabled();
+    }
+
+    /**
+     * Get the metrics recording the values of the operations.
+     *
+     * @return The metrics, 'Metrics.NONE' if nothing is recorded.
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Encode a word on a long.
+     *
+     * Only for r <= 6 (encoded word of 64 bits at most).
+     *
+     * The encoded word is read in the table built at the construction.
+     *
+     * @param word The word to encode (r + 1 bits).
+     * @return The encoded word.
+     */
+    public long encodeWord(int word) {
+        checkSingleWord();
+        if (measured) {
+            metrics.encoded(1);
+        }
+        return codebook[word & ((2 << r) - 1)];
+    }
+
+    /**
+     * Encode a word in a 'long[]'.
+     *
+     * Works for every r.
+     * If r <= 8, the encoded word is copied from the table built at the construction.
+     * Otherwise, the lines of the matrix selected by the bits of the word are xored.
+     *
+     * @param word The word to encode (r + 1 bits).
+     * @param code The array receiving the encoded word (at least 'getWords()' longs).
+     */
+    public void encodeWord(int word, long[] code) {
+        encodeWord(word, code, 0);
+    }
+
+    /**
+     * Encode a word in a 'long[]', at a position (see 'encodeWord(int, long[])').
+     *
+     * @param word   The word to encode (r + 1 bits).
+     * @param code   The array receiving the encoded word.
+     * @param offset The position of the encoded word in 'code' ('getWords()' longs from there).
+     */
+    public void encodeWord(int word, long[] code, int offset) {
+        if (measured) {
+            metrics.encoded(1);
+        }
+        codeword(word, code, offset);
+    }
+
+    /**
+     * Write the encoded word of 'word' in 'code' (see 'encodeWord(int, long[])').
+     */
+    private void codeword(int word, long[] code) {
+        codeword(word, code, 0);
+    }
+
+    /**
+     * Write the encoded word of 'word' in 'code' from 'first'.
+     */
+    private void codeword(int word, long[] code, int first) {
+        word &= (2 << r) - 1;
+        if (codebook != null) {
+            System.arraycopy(codebook, word * words, code, first, words);
+            return;
+        }
+        for (int k = 0; k < words; k++) {
+            code[first + k] = 0;
+        }
+        for (int j = 0; j <= r; j++) {
+            if ((word & (1 << j)) != 0) {
+                int offset = j * words;
+                for (int k = 0; k < words; k++) {
+                    code[first + k] ^= rows[offset + k];
+                }
+            }
+        }
+    }
+
+    /**
+     * Decode an encoded word stored on a long.
+     *
+     * Only for r <= 6.
+     *
+     * @param code The encoded word.
+     * @return The decoded word.
+     */
+    public int decodeWord(long code) {
+        checkSingleWord();
+        if (measured) {
+            metrics.decoded(1);
+        }
+        int word = 0;
+
+        // If the first bit is 1, inverse all bits.
+        if ((code & 1) != 0) {
+            code = ~code;
+            word = 1 << r;
+        }
+
+        // Get values of power 2 positions.
+        for (int i = 0; i < r; i++) {
+            if (((code >>> (1 << i)) & 1) != 0) {
+                word |= 1 << i;
+            }
+        }
+        return word;
+    }
+
+    /**
+     * Decode an encoded word stored in a 'long[]'.
+     *
+     * @param code The encoded word.
+     * @return The decoded word.
+     */
+    public int decodeWord(long[] code) {
+        if (measured) {
+            metrics.decoded(1);
+        }
+        int word = 0;
+        long inverse = 0;
+
+        // If the first bit is 1, inverse all bits.
+        if ((code[0] & 1) != 0) {
+            inverse = -1L;
+            word = 1 << r;
+        }
+
+        // Get values of power 2 positions.
+        for (int i = 0; i < r; i++) {
+            int pos = 1 << i;
+            if ((((code[pos >>> 6] ^ inverse) >>> (pos & 63)) & 1) != 0) {
+                word |= 1 << i;
+            }
+        }
+        return word;
+    }
+
+    /**
+     * Unalter an encoded word stored on a long.
+     *
+     * Only for r <= 6.
+     *
+     * @param code The altered word.
+     * @return The unaltered word.
+     */
+    public long unalterWord(long code) {
+        checkSingleWord();
+        int message = correctCached(code);
+        if (measured) {
+            measure(code, message);
+        }
+        return codebook[message];
+    }
+
+    /**
+     * Unalter and decode an encoded word stored on a long.
+     *
+     * Only for r <= 6.
+     * The result is the same as 'decodeWord(unalterWord(code))', without building the encoded word :
+     * the correction already finds the decoded word.
+     *
+     * @param code The altered word.
+     * @return     The decoded word.
+     */
+    public int unalterDecodeWord(long code) {
+        checkSingleWord();
+        int message = correctCached(code);
+        if (measured) {
+            measure(code, message);
+            metrics.decoded(1);
+        }
+        return message;
+    }
+
+    /**
+     * Find the word nearest to an altered word stored on a long, in the cache if there is one.
+     *
+     * @param code The altered word.
+     * @return     The unaltered and decoded word.
+     */
+    private int correctCached(long code) {
+        DecodeCache c = cache;
+        if (c == null) {
+            return correct(code);
+        }
+        code &= length == 64 ? -1L : (1L << length) - 1;
+        int message = c.get(code);
+        if (message < 0) {
+            message = correct(code);
+            c.put(code, message);
+        }
+        return message;
+    }
+
+    /**
+     * Find the word nearest to an altered word stored on a long.
+     *
+     * @param code The altered word.
+     * @return     The unaltered and decoded word.
+     */
+    private int correct(long code) {
+        if (decodeTable != null) {
+            return decodeTable.decode(code);
+        }
+        int[] F = scratch.get();
+        for (int i = 0; i < length; i++) {
+            F[i] = 1 - 2 * (int)((code >>> i) & 1);
+        }
+        return correct(F);
+    }
+
+    /**
+     * Use a cache of the corrections (only for r <= 6).
+     *
+     * The words unaltered on a long ('unalterWord(long)' and the methods using it)
+     * are first searched in the cache. To call before the instance is shared between threads.
+     *
+     * @param capacity The maximal number of words in the cache (all the words if r <= 4),
+     *                 0 to remove the cache.
+     * @return         The cache, to read its numbers of hits and misses (null if removed).
+     */
+    public DecodeCache enableCache(int capacity) {
+        cache = capacity > 0 ? new DecodeCache(r, capacity) : null;
+        return cache;
+    }
+
+    /**
+     * Get the cache of the corrections.
+     *
+     * @return The cache, null if there is no cache.
+     */
+    public DecodeCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Unalter an encoded word stored in a 'long[]'.
+     *
+     * The array 'out' can be the same as 'code'.
+     *
+     * @param code The altered word.
+     * @param out  The array receiving the unaltered word.
+     */
+    public void unalterWord(long[] code, long[] out) {
+        int[] F = scratch.get();
+        for (int i = 0; i < length; i++) {
+            F[i] = 1 - 2 * (int)((code[i >>> 6] >>> (i & 63)) & 1);
+        }
+        int message = correct(F);
+        if (measured) {
+            measure(code, 0, message);
+        }
+        codeword(message, out);
+    }
+
+    /**
+     * Unalter and decode an encoded word stored in a 'long[]'.
+     *
+     * The result is the same as 'decodeWord' after 'unalterWord(code, out)', without building
+     * the encoded word.
+     *
+     * @param code The altered word.
+     * @return     The decoded word.
+     */
+    public int unalterDecodeWord(long[] code) {
+        int[] F = scratch.get();
+        for (int i = 0; i < length; i++) {
+            F[i] = 1 - 2 * (int)((code[i >>> 6] >>> (i & 63)) & 1);
+        }
+        int message = correct(F);
+        if (measured) {
+            measure(code, 0, message);
+            metrics.decoded(1);
+        }
+        return message;
+    }
+
+    /**
+     * Record the correction of a word stored on a long in 'metrics'.
+     *
+     * @param code    The altered word.
+     * @param message The decoded word found by the correction.
+     */
+    private void measure(long code, int message) {
+        code &= length == 64 ? -1L : (1L << length) - 1;
+        int flips = Long.bitCount(code ^ codebook[message]);
+        boolean ambiguous = false;
+        if (flips > 0 && flips * 4 >= length) {
+            int[] F = scratch.get();
+            for (int i = 0; i < length; i++) {
+                F[i] = 1 - 2 * (int)((code >>> i) & 1);
+            }
+            ambiguous = maxima(F) > 1;
+        }
+        metrics.corrected(flips, ambiguous, flips > 0 && flips * 4 >= length);
+    }
+
+    /**
+     * Record the correction of a word stored in a 'long[]' in 'metrics'.
+     *
+     * @param codes   The altered words.
+     * @param offset  The position of the altered word in 'codes'.
+     * @param message The decoded word found by the correction.
+     */
+    private void measure(long[] codes, int offset, int message) {
+        long[] code = codeScratch.get();
+        codeword(message, code);
+        int flips = 0;
+        for (int k = 0; k < words; k++) {
+            flips += Long.bitCount(codes[offset + k] ^ code[k]);
+        }
+        boolean ambiguous = false;
+        if (flips > 0 && flips * 4 >= length) {
+            int[] F = scratch.get();
+            for (int i = 0; i < length; i++) {
+                F[i] = 1 - 2 * (int)((codes[offset + (i >>> 6)] >>> (i & 63)) & 1);
+            }
+            ambiguous = maxima(F) > 1;
+        }
+        metrics.corrected(flips, ambiguous, flips > 0 && flips * 4 >= length);
+    }
+
+    /**
+     * Count the encoded words nearest to the altered word loaded in 'F'.
+     *
+     * Only used by the metrics : two encoded words can be at the same
+     * distance only if this distance is 2^(r-2) or more.
+     *
+     * @param F The altered word in +1/-1, overwritten by the transform.
+     * @return  The number of positions of the maximum in absolute value.
+     */
+    private int maxima(int[] F) {
+        for (int step = 1; step < length; step <<= 1) {
+            for (int i = 0; i < length; i += step << 1) {
+                for (int j = i; j < i + step; j++) {
+                    int a = F[j];
+                    int b = F[j + step];
+                    F[j] = a + b;
+                    F[j + step] = a - b;
+                }
+            }
+        }
+        int max = -1;
+        int count = 0;
+        for (int j = 0; j < length; j++) {
+            int abs = Math.abs(F[j]);
+            if (abs > max) {
+                max = abs;
+                count = 1;
+            }
+            else if (abs == max) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Unalter and decode a word received with soft values.
+     *
+     * There is one value per bit of the encoded word : positive if the bit is
+     * more likely a 0, negative if it is more likely a 1, with an absolute value
+     * proportional to the confidence (e.g. a log-likelihood ratio log(P(0) / P(1))).
+     * With values +1/-1, the result is the same as 'decode(unalterWord(code))'.
+     *
+     * The Hadamard transform gives the correlation of the values with each
+     * encoded word, the maximum gives the most likely word.
+     *
+     * @param values      The soft values, 2^r values per word.
+     * @param offset      The position of the first value of the word.
+     * @param reliability If not null, receives the reliability of the decision at 'index' :
+     *                    half the difference between the two best correlations (0 if they are equal).
+     * @param index       The position of the reliability in 'reliability'.
+     * @return            The decoded word.
+     */
+    public int unalterSoft(float[] values, int offset, float[] reliability, int index) {
+        float[] F = softScratch.get();
+        System.arraycopy(values, offset, F, 0, length);
+
+        // Hadamard transform, in place.
+        for (int step = 1; step < length; step <<= 1) {
+            for (int i = 0; i < length; i += step << 1) {
+                for (int j = i; j < i + step; j++) {
+                    float a = F[j];
+                    float b = F[j + step];
+                    F[j] = a + b;
+                    F[j + step] = a - b;
+                }
+            }
+        }
+
+        // Find the two biggest values in absolute value (first one if several).
+        int posMax = 0;
+        float max = -1;
+        float second = 0;
+        for (int i = 0; i < length; i++) {
+            float abs = Math.abs(F[i]);
+            if (abs > max) {
+                second = Math.max(max, 0);
+                max = abs;
+                posMax = i;
+            }
+            else if (abs > second) {
+                second = abs;
+            }
+        }
+        if (length == 1) {
+            // Only two words, with opposite correlations.
+            second = -max;
+        }
+        if (reliability != null) {
+            reliability[index] = (max - second) / 2;
+        }
+        if (measured) {
+            metrics.decoded(1);
+        }
+
+        // If the maximum is negative, the last bit is 1.
+        return F[posMax] < 0 ? posMax + length : posMax;
+    }
+
+    /**
+     * Unalter and decode a word received with quantized soft values.
+     *
+     * Same as 'unalterSoft(float[], int, float[], int)', with integer values.
+     * The transform is computed on ints : the sum of the absolute values
+     * of a word must fit on an int.
+     *
+     * @param values The soft values, 2^r values per word.
+     * @param offset The position of the first value of the word.
+     * @return       The decoded word.
+     */
+    public int unalterSoft(short[] values, int offset) {
+        if (measured) {
+            metrics.decoded(1);
+        }
+        int[] F = scratch.get();
+        for (int i = 0; i < length; i++) {
+            F[i] = values[offset + i];
+        }
+        return correct(F);
+    }
+
+    /**
+     * Unalter and decode all the words of an image received with soft values.
+     *
+     * @param values      The soft values, 2^r values per word.
+     * @param reliability If not null, receives the reliability of each word.
+     * @return            The decoded words.
+     */
+    public int[] unalterSoft(float[] values, float[] reliability) {
+        int[] messages = new int[values.length >>> r];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = unalterSoft(values, i << r, reliability, i);
+        }
+        return messages;
+    }
 
     /**
-     * Constructor with the rang.
+     * Find the word nearest to the altered word loaded in 'F'.
+     *
+     * This method uses the Fourier (fast Hadamard) algorithm, in place in 'F'.
+     * The value at position i of 'F' is -1 if the bit i is 1, 1 otherwise.
+     *
+     * The maximum in absolute value is searched during the last step of the transform.
+     * If several positions have the same maximum, the first one is kept.
+     *
+     * @param F The altered word in +1/-1, overwritten by the transform.
+     * @return  The unaltered and decoded word.
      */
-    public ReedMuller(int rang) {
-        this.r = rang;
+    private int correct(int[] F) {
+        if (length == 1) {
+            return F[0] < 0 ? 1 : 0;
+        }
+        int half = length >>> 1;
+
+        // All steps but the last one.
+        for (int step = 1; step < half; step <<= 1) {
+            for (int i = 0; i < length; i += step << 1) {
+                for (int j = i; j < i + step; j++) {
+                    int a = F[j];
+                    int b = F[j + step];
+                    F[j] = a + b;
+                    F[j + step] = a - b;
+                }
+            }
+        }
+
+        // Last step, with the search of the maximum in absolute value
+        // in the low half and in the high half.
+        int maxLow = -1;
+        int posLow = 0;
+        int valueLow = 0;
+        int maxHigh = -1;
+        int posHigh = 0;
+        int valueHigh = 0;
+        for (int j = 0; j < half; j++) {
+            int a = F[j];
+            int b = F[j + half];
+            int low = a + b;
+            int high = a - b;
+            if (Math.abs(low) > maxLow) {
+                maxLow = Math.abs(low);
+                posLow = j;
+                valueLow = low;
+            }
+            if (Math.abs(high) > maxHigh) {
+                maxHigh = Math.abs(high);
+                posHigh = j + half;
+                valueHigh = high;
+            }
+        }
+        int posMax = maxLow >= maxHigh ? posLow : posHigh;
+        int valueMax = maxLow >= maxHigh ? valueLow : valueHigh;
+
+        // If the maximum is negative, the last bit is 1.
+        return valueMax < 0 ? posMax + length : posMax;
     }
 
     /**
-     * Encode a word.
+     * Unalter and decode encoded words by blocks.
+     *
+     * The words are corrected by blocks of up to 64 words : the Hadamard transform
+     * is computed for all the words of a block at the same time. The values of a
+     * position for all the words of the block are stored next to each other, so each
+     * step of the transform is a loop of additions on contiguous values, which the
+     * JIT compiles with vector instructions.
+     *
+     * The result is the same as 'decode(unalter(codes))'.
+     *
+     * @param codes The altered words, 'getWords()' longs per word.
+     * @return      The decoded words.
+     */
+    public int[] unalterBatch(long[] codes) {
+        int[] messages = new int[codes.length / words];
+        unalterBatch(codes, 0, messages, 0, messages.length);
+        return messages;
+    }
+
+    /**
+     * Unalter and decode 'count' encoded words by blocks (see 'unalterBatch(long[])').
+     *
+     * @param codes          The altered words, 'getWords()' longs per word.
+     * @param offset         The position of the first word in 'codes'.
+     * @param messages       The array receiving the decoded words.
+     * @param messagesOffset The position of the first decoded word in 'messages'.
+     * @param count          The number of words.
+     */
+    public void unalterBatch(long[] codes, int offset, int[] messages, int messagesOffset, int count) {
+        if (!measured) {
+            correctBatch(codes, offset, messages, messagesOffset, count);
+            return;
+        }
+        long start = System.nanoTime();
+        correctBatch(codes, offset, messages, messagesOffset, count);
+        long nanos = System.nanoTime() - start;
+        for (int i = 0; i < count; i++) {
+            if (words == 1) {
+                measure(codes[offset + i], messages[messagesOffset + i]);
+            }
+            else {
+                measure(codes, offset + i * words, messages[messagesOffset + i]);
+            }
+        }
+        metrics.decoded(count);
+        metrics.latency(Metrics.Operation.UNALTER, nanos, count);
+    }
+
+    /**
+     * Unalter and decode 'count' encoded words (see 'unalterBatch').
+     */
+    private void correctBatch(long[] codes, int offset, int[] messages, int messagesOffset, int count) {
+        if (decodeTable != null) {
+            for (int i = 0; i < count; i++) {
+                messages[messagesOffset + i] = decodeTable.decode(codes[offset + i]);
+            }
+            return;
+        }
+        if (r > BATCH_MAX_RANG || r == 0) {
+            int[] F = scratch.get();
+            for (int i = 0; i < count; i++) {
+                int position = offset + i * words;
+                for (int j = 0; j < length; j++) {
+                    F[j] = 1 - 2 * (int)((codes[position + (j >>> 6)] >>> (j & 63)) & 1);
+                }
+                messages[messagesOffset + i] = correct(F);
+            }
+            return;
+        }
+        int[] T = batchScratch.get();
+        for (int first = 0; first < count; first += lanes) {
+            int block = Math.min(lanes, count - first);
+            correctBlock(codes, offset + first * words, block, T);
+            int results = length * lanes;
+            System.arraycopy(T, results, messages, messagesOffset + first, block);
+        }
+    }
+
+    /**
+     * Correct a block of words.
+     *
+     * The value of the position i for the word b is at 'T[i * lanes + b]'.
+     * The decoded words are written at 'T[length * lanes + b]'.
+     *
+     * @param codes  The altered words.
+     * @param offset The position of the first word in 'codes'.
+     * @param block  The number of words of the block (up to 'lanes').
+     * @param T      The buffer.
+     */
+    private void correctBlock(long[] codes, int offset, int block, int[] T) {
+        int B = lanes;
+        int half = length >>> 1;
+
+        // Load the bits in +1/-1 (the missing words of the block are 0),
+        // with the first step of the transform : (x + y, x - y) for the positions 2k and 2k + 1.
+        for (int k = 0; k < half; k++) {
+            int i = k << 1;
+            int low = i * B;
+            int high = low + B;
+            int shift = i & 63;
+            int index = offset + (i >>> 6);
+            for (int b = 0; b < block; b++) {
+                long bits = codes[index + b * words] >>> shift;
+                int x = (int)(bits & 1);
+                int y = (int)((bits >>> 1) & 1);
+                T[low + b] = 2 - 2 * (x + y);
+                T[high + b] = 2 * (y - x);
+            }
+            for (int b = block; b < B; b++) {
+                T[low + b] = 0;
+                T[high + b] = 0;
+            }
+        }
+
+        // Other steps of the Hadamard transform, on all the words at the same time.
+        for (int step = 2; step < length; step <<= 1) {
+            for (int i = 0; i < length; i += step << 1) {
+                for (int j = i; j < i + step; j++) {
+                    int low = j * B;
+                    int high = (j + step) * B;
+                    for (int b = 0; b < B; b++) {
+                        int x = T[low + b];
+                        int y = T[high + b];
+                        T[low + b] = x + y;
+                        T[high + b] = x - y;
+                    }
+                }
+            }
+        }
+
+        // Find the maximum in absolute value of each word (first one if several).
+        // Each value gives a key : |value|, then the position reversed (to keep the first one),
+        // then the sign. The maximum of the keys gives the result.
+        int results = length * B;
+        int shift = r + 1;
+        for (int b = 0; b < B; b++) {
+            T[results + b] = Integer.MIN_VALUE;
+        }
+        for (int i = 0; i < length; i++) {
+            int row = i * B;
+            int position = (length - 1 - i) << 1;
+            for (int b = 0; b < B; b++) {
+                int value = T[row + b];
+                int key = (Math.abs(value) << shift) | position | (value >>> 31);
+                T[results + b] = Math.max(T[results + b], key);
+            }
+        }
+
+        // Get the word from the key : if the maximum is negative, the last bit is 1.
+        int mask = (length << 1) - 1;
+        for (int b = 0; b < B; b++) {
+            int key = T[results + b] & mask;
+            T[results + b] = (length - 1 - (key >>> 1)) + ((key & 1) << r);
+        }
+    }
+
+    /**
+     * Check that an encoded word fits on a long.
+     */
+    private void checkSingleWord() {
+        if (words != 1) {
+            throw new IllegalStateException("Encoded words of 2^" + r + " bits don't fit on a long, use 'long[]'.");
+        }
+    }
+
+    /**
+     * Convert a BigInteger into an encoded word in a 'long[]'.
+     *
+     * @param value The BigInteger (negative values are taken on 2^r bits).
+     * @param code  The array receiving the value.
+     */
+    private void toWords(BigInteger value, long[] code) {
+        for (int k = 0; k < words; k++) {
+            code[k] = value.shiftRight(k << 6).longValue();
+        }
+        if ((length & 63) != 0) {
+            code[words - 1] &= (1L << (length & 63)) - 1;
+        }
+    }
+
+    /**
+     * Convert an encoded word in a 'long[]' into a positive BigInteger.
      *
-     * The encoding matrix is not stored.
+     * @param code The encoded word.
+     * @return The BigInteger.
+     */
+    private BigInteger toBigInteger(long[] code) {
+        byte[] bytes = new byte[(words << 3) + 1];
+        for (int k = 0; k < words; k++) {
+            for (int b = 0; b < 8; b++) {
+                bytes[bytes.length - 1 - (k << 3) - b] = (byte)(code[k] >>> (b << 3));
+            }
+        }
+        return new BigInteger(bytes);
+    }
+
+    /**
+     * Encode a word.
      *
-     * We can calculate it on the fly.
+     * The encoding matrix is built once, at the construction (see 'encodeWord').
      *
      * The matrix is composed of r + 1 lines and r^2 columns.
      * The last line is fill with 1 values.
@@ -84,30 +1028,9 @@ public class ReedMuller {
      * @return The encoded word.
      */
     public BigInteger encode(BigInteger word) {
-
-        int length = (int)Math.pow(2, r);
-        BigInteger code = new BigInteger("0");
-
-        for (int i = 0; i < length; i++) {
-            // Conversion of i in binary.
-            String iBinary = Integer.toBinaryString(i);
-            // Fill in with 0 if missing (0 at the left).
-            iBinary = fillZeroLeft(iBinary, r);
-            // Add "1" at the beginning.
-            iBinary = "1" + iBinary;
-            // Multiplication of the word by the column of the matrix.
-            int sum = 0;
-            for (int j = 0; j < r + 1; j++) {
-                int bit = word.testBit(j) ? 1 : 0;
-                sum += bit * Character.getNumericValue((iBinary.charAt(r - j)));
-            }
-            sum %= 2;
-            // Set the correct value for the bit.
-            if (sum == 1) {
-                code = code.setBit(i);
-            }
-        }
-        return code;
+        long[] code = new long[words];
+        encodeWord(word.intValue(), code);
+        return toBigInteger(code);
     }
 
     /**
@@ -123,17 +1046,300 @@ public class ReedMuller {
     public String encode(String buffer) {
         String header = ParsePGM.readHeader(buffer);
         String data = ParsePGM.readData(buffer);
-        String output = "";
+        StringBuilder output = new StringBuilder(header);
 
         for (String s : data.split("\\s+")) {
             // Exclude whitespaces
             if (s.trim().length() > 0) {
                 BigInteger word = new BigInteger(s.trim());
-                output += this.encode(word).toString();
-                output += " ";
+                output.append(this.encode(word).toString());
+                output.append(' ');
+            }
+        }
+        return output.toString();
+    }
+
+    /**
+     * Encode the pixels of an image.
+     *
+     * @param pixels The pixels.
+     * @return       The encoded words, 'getWords()' longs per word.
+     */
+    public long[] encode(int[] pixels) {
+        long start = measured ? System.nanoTime() : 0;
+        long[] codes = new long[codesLength(pixels.length)];
+        if (words == 1) {
+            for (int i = 0; i < pixels.length; i++) {
+                codes[i] = encodeWord(pixels[i]);
+            }
+        }
+        else {
+            long[] code = new long[words];
+            for (int i = 0; i < pixels.length; i++) {
+                encodeWord(pixels[i], code);
+                System.arraycopy(code, 0, codes, i * words, words);
+            }
+        }
+        if (measured) {
+            metrics.latency(Metrics.Operation.ENCODE, System.nanoTime() - start, pixels.length);
+        }
+        return codes;
+    }
+
+    /**
+     * Decode the encoded words of an image.
+     *
+     * @param codes The encoded words, 'getWords()' longs per word.
+     * @return      The pixels.
+     */
+    public int[] decode(long[] codes) {
+        long start = measured ? System.nanoTime() : 0;
+        int[] pixels = new int[codes.length / words];
+        decode(codes, pixels, 0, pixels.length);
+        if (measured) {
+            metrics.latency(Metrics.Operation.DECODE, System.nanoTime() - start, pixels.length);
+        }
+        return pixels;
+    }
+
+    /**
+     * Decode the encoded words of an image, using all the processors.
+     *
+     * The words are split in chunks decoded in parallel.
+     * The result is the same as 'decode(long[])'.
+     *
+     * @param codes The encoded words, 'getWords()' longs per word.
+     * @return      The pixels.
+     */
+    public int[] decodeParallel(long[] codes) {
+        long start = measured ? System.nanoTime() : 0;
+        final int[] pixels = new int[codes.length / words];
+        final int count = pixels.length;
+        IntStream.range(0, chunks(count)).parallel().forEach(c -> {
+            int from = c * PARALLEL_CHUNK;
+            decode(codes, pixels, from, Math.min(count, from + PARALLEL_CHUNK));
+        });
+        if (measured) {
+            metrics.latency(Metrics.Operation.DECODE, System.nanoTime() - start, count);
+        }
+        return pixels;
+    }
+
+    /**
+     * Decode the encoded words from 'from' (included) to 'to' (excluded).
+     */
+    private void decode(long[] codes, int[] pixels, int from, int to) {
+        if (words == 1) {
+            for (int i = from; i < to; i++) {
+                pixels[i] = decodeWord(codes[i]);
+            }
+        }
+        else {
+            long[] code = new long[words];
+            for (int i = from; i < to; i++) {
+                System.arraycopy(codes, i * words, code, 0, words);
+                pixels[i] = decodeWord(code);
+            }
+        }
+    }
+
+    /**
+     * Unalter the encoded words of an image.
+     *
+     * @param codes The altered words, 'getWords()' longs per word.
+     * @return      The unaltered words.
+     */
+    public long[] unalter(long[] codes) {
+        long start = measured ? System.nanoTime() : 0;
+        long[] output = new long[codes.length];
+        unalter(codes, output, 0, codes.length / words);
+        if (measured) {
+            metrics.latency(Metrics.Operation.UNALTER, System.nanoTime() - start, codes.length / words);
+        }
+        return output;
+    }
+
+    /**
+     * Unalter the encoded words of an image, using all the processors.
+     *
+     * The words are split in chunks unaltered in parallel.
+     * The result is the same as 'unalter(long[])'.
+     *
+     * @param codes The altered words, 'getWords()' longs per word.
+     * @return      The unaltered words.
+     */
+    public long[] unalterParallel(long[] codes) {
+        long start = measured ? System.nanoTime() : 0;
+        final long[] output = new long[codes.length];
+        final int count = codes.length / words;
+        IntStream.range(0, chunks(count)).parallel().forEach(c -> {
+            int from = c * PARALLEL_CHUNK;
+            unalter(codes, output, from, Math.min(count, from + PARALLEL_CHUNK));
+        });
+        if (measured) {
+            metrics.latency(Metrics.Operation.UNALTER, System.nanoTime() - start, count);
+        }
+        return output;
+    }
+
+    /**
+     * Unalter the encoded words from 'from' (included) to 'to' (excluded).
+     */
+    private void unalter(long[] codes, long[] output, int from, int to) {
+        if (words == 1) {
+            for (int i = from; i < to; i++) {
+                output[i] = unalterWord(codes[i]);
+            }
+        }
+        else {
+            long[] code = new long[words];
+            for (int i = from; i < to; i++) {
+                System.arraycopy(codes, i * words, code, 0, words);
+                unalterWord(code, code);
+                System.arraycopy(code, 0, output, i * words, words);
+            }
+        }
+    }
+
+    /**
+     * Encode the pixels of an image stored off-heap.
+     *
+     * @param pixels The pixels.
+     * @param codes  The buffer receiving the encoded words (at least as many words as pixels).
+     */
+    public void encode(PixelBuffer pixels, CodewordBuffer codes) {
+        checkBuffer(codes, pixels.getCount());
+        long start = measured ? System.nanoTime() : 0;
+        int count = pixels.getCount();
+        if (words == 1) {
+            for (int i = 0; i < count; i++) {
+                codes.set(i, encodeWord(pixels.get(i)));
+            }
+        }
+        else {
+            long[] code = new long[words];
+            for (int i = 0; i < count; i++) {
+                encodeWord(pixels.get(i), code);
+                codes.set(i, code, 0);
+            }
+        }
+        if (measured) {
+            metrics.latency(Metrics.Operation.ENCODE, System.nanoTime() - start, count);
+        }
+    }
+
+    /**
+     * Decode the encoded words of an image stored off-heap.
+     *
+     * @param codes  The encoded words.
+     * @param pixels The buffer receiving the pixels (its size of pixel must hold r + 1 bits).
+     */
+    public void decode(CodewordBuffer codes, PixelBuffer pixels) {
+        checkBuffer(codes, pixels.getCount());
+        long start = measured ? System.nanoTime() : 0;
+        int count = pixels.getCount();
+        if (words == 1) {
+            for (int i = 0; i < count; i++) {
+                pixels.set(i, decodeWord(codes.get(i)));
+            }
+        }
+        else {
+            long[] code = new long[words];
+            for (int i = 0; i < count; i++) {
+                codes.get(i, code, 0);
+                pixels.set(i, decodeWord(code));
+            }
+        }
+        if (measured) {
+            metrics.latency(Metrics.Operation.DECODE, System.nanoTime() - start, count);
+        }
+    }
+
+    /**
+     * Unalter the encoded words of an image stored off-heap, in place.
+     *
+     * @param codes The altered words, replaced by the unaltered words.
+     */
+    public void unalter(CodewordBuffer codes) {
+        checkBuffer(codes, codes.getCount());
+        long start = measured ? System.nanoTime() : 0;
+        int count = codes.getCount();
+        if (words == 1) {
+            for (int i = 0; i < count; i++) {
+                codes.set(i, unalterWord(codes.get(i)));
+            }
+        }
+        else {
+            long[] code = new long[words];
+            for (int i = 0; i < count; i++) {
+                codes.get(i, code, 0);
+                unalterWord(code, code);
+                codes.set(i, code, 0);
+            }
+        }
+        if (measured) {
+            metrics.latency(Metrics.Operation.UNALTER, System.nanoTime() - start, count);
+        }
+    }
+
+    /**
+     * Unalter and decode the encoded words of an image stored off-heap.
+     *
+     * The words are copied by chunks of 'PARALLEL_CHUNK' words (fewer if r > 12,
+     * see 'chunkSize') in a buffer of fixed size and corrected with 'unalterBatch', so the memory used on the
+     * heap doesn't depend on the size of the image.
+     *
+     * @param codes  The altered words.
+     * @param pixels The buffer receiving the decoded words (its size of pixel must hold r + 1 bits).
+     */
+    public void unalterDecode(CodewordBuffer codes, PixelBuffer pixels) {
+        checkBuffer(codes, pixels.getCount());
+        int count = pixels.getCount();
+        int chunkSize = chunkSize(PARALLEL_CHUNK);
+        long[] chunk = new long[chunkSize * words];
+        int[] messages = new int[chunkSize];
+        for (int first = 0; first < count; first += chunkSize) {
+            int size = Math.min(chunkSize, count - first);
+            for (int i = 0; i < size; i++) {
+                codes.get(first + i, chunk, i * words);
+            }
+            unalterBatch(chunk, 0, messages, 0, size);
+            for (int i = 0; i < size; i++) {
+                pixels.set(first + i, messages[i]);
             }
         }
-        return header + output;
+    }
+
+    /**
+     * Check that a buffer of encoded words has words of this code and at least 'count' words.
+     */
+    private void checkBuffer(CodewordBuffer codes, int count) {
+        if (codes.getRang() != r) {
+            throw new IllegalArgumentException("The buffer has words of 2^" + codes.getRang() + " bits, not 2^" + r + ".");
+        }
+        if (codes.getCount() < count) {
+            throw new IllegalArgumentException("The buffer has " + codes.getCount() + " words, " + count + " needed.");
+        }
+    }
+
+    /**
+     * Number of longs of 'count' encoded words in a 'long[]'.
+     *
+     * @throws IllegalArgumentException If the words don't fit in an array.
+     */
+    private int codesLength(int count) {
+        long size = (long)count * words;
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many words of 2^" + r + " bits for an array : " + count + ".");
+        }
+        return (int)size;
+    }
+
+    /**
+     * Number of chunks of 'PARALLEL_CHUNK' words needed for 'count' words.
+     */
+    private static int chunks(int count) {
+        return (count + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK;
     }
 
     /**
@@ -184,20 +1390,9 @@ public class ReedMuller {
      * @return The decoded word.
      */
     public BigInteger decode(BigInteger code) {
-        BigInteger word = new BigInteger("0");
-
-        // Check for the first bit.
-        // If 1, inverse all bits and first bit from left is 1 (last bit).
-        if (code.testBit(0)) {
-            code = code.not();
-            word = word.setBit(r);
-        }
-
-        // Get values of power 2 positions.
-        for (int i = 0; i < r; i++) {
-            word = code.testBit((int)Math.pow(2, i)) ? word.setBit(i) : word.clearBit(i);
-        }
-        return word;
+        long[] c = new long[words];
+        toWords(code, c);
+        return BigInteger.valueOf(decodeWord(c));
     }
 
     /**
@@ -213,18 +1408,18 @@ public class ReedMuller {
     public String decode(String buffer) {
         String header = ParsePGM.readHeader(buffer);
         String data = ParsePGM.readData(buffer);
-        String output = "";
+        StringBuilder output = new StringBuilder(header);
 
         for (String s : data.split("\\s+")) {
             // Exclude whitespaces
             if (s.trim().length() > 0) {
                 //BigInteger word = new BigInteger(s.trim());
-                BigInteger word = getBigInteger(s.trim(), (int)Math.pow(2, r));
-                output += this.decode(word).toString();
-                output += " ";
+                BigInteger word = getBigInteger(s.trim(), length);
+                output.append(this.decode(word).toString());
+                output.append(' ');
             }
         }
-        return header + output;
+        return output.toString();
     }
 
     /**
@@ -238,18 +1433,18 @@ public class ReedMuller {
     public String unalter (String buffer) {
         String header = ParsePGM.readHeader(buffer);
         String data = ParsePGM.readData(buffer);
-        String output = "";
+        StringBuilder output = new StringBuilder(header);
 
         for (String s : data.split("\\s+")) {
             // Exclude whitespaces
             if (s.trim().length() > 0) {
                 //BigInteger word = new BigInteger(s.trim());
-                BigInteger word = getBigInteger(s.trim(), (int)Math.pow(2, r));
-                output += this.unalter(word).toString();
-                output += " ";
+                BigInteger word = getBigInteger(s.trim(), length);
+                output.append(this.unalter(word).toString());
+                output.append(' ');
             }
         }
-        return header + output;
+        return output.toString();
     }
 
     /**
@@ -261,68 +1456,50 @@ public class ReedMuller {
      * @return      The unaltered word.
      */
     public BigInteger unalter (BigInteger mot) {
+        long[] code = new long[words];
+        toWords(mot, code);
+        unalterWord(code, code);
+        return toBigInteger(code);
+    }
 
-        // Transformer le mot en string pour avoir tous les 0 qu'il faut.
-        String motBinary = mot.toString(2);
-        motBinary = fillZeroLeft(motBinary, (int)Math.pow(2, r));
-
-        // Stocker le mot dans un ArrayList avec des -1 à la place des 1 et des 1 à la places des 0.
-        ArrayList<Integer> F = new ArrayList<Integer>();
-        for (int i = 0; i < motBinary.length(); i++) {
-            if (motBinary.charAt(i) == '1') {
-                F.add(-1);
-            }
-            else {
-                F.add(1);
-            }
-        }
-
-        String iBinary;
-
-        // Boucle de n à 1 pour k
-        for (int n = r - 1; n >= 0; n--) { // K
-            ArrayList<Integer> Ftmp = new ArrayList<Integer>();
-            for (int i = 0; i < Math.pow(2, r); i++) { // Position (colonne) dans K
-                // Transfrome  i en binaire.
-                iBinary = Integer.toBinaryString(i);
-                iBinary = fillZeroLeft(iBinary, r);
+    /**
+     * Unalter and decode a word.
+     *
+     * Same as 'decode(unalter(mot))', without building the unaltered word.
+     *
+     * @param mot The altered word.
+     * @return    The decoded word.
+     */
+    public BigInteger unalterDecode(BigInteger mot) {
+        long[] code = new long[words];
+        toWords(mot, code);
+        return BigInteger.valueOf(unalterDecodeWord(code));
+    }
 
-                // Récupère suivant le K, le nième bit de i.
-                int posK = Integer.parseInt(Character.toString(iBinary.charAt(r - 1 - n)));
+    /**
+     * Unalter and decode an image.
+     *
+     * Same as 'decode(unalter(buffer))', in one pass : the unaltered
+     * image is neither built nor written in a String.
+     *
+     * @param buffer The altered image.
+     * @return       The decoded image.
+     */
+    public String unalterDecode(String buffer) {
+        String header = ParsePGM.readHeader(buffer);
+        String data = ParsePGM.readData(buffer);
+        StringBuilder output = new StringBuilder(header);
+        long[] code = new long[words];
 
-                // les tests et additions
-                if (posK == 1) {
-                    Ftmp.add(F.get(i) - F.get(i - (int)Math.pow(2, n)));
-                }
-                else {
-                    Ftmp.add(F.get(i) + F.get(i + (int)Math.pow(2, n)));
-                }
+        for (String s : data.split("\\s+")) {
+            // Exclude whitespaces
+            if (s.trim().length() > 0) {
+                toWords(getBigInteger(s.trim(), length), code);
+                output.append(unalterDecodeWord(code));
+                output.append(' ');
             }
-            F = Ftmp;   // F est mis à jour. C'est ce F qui sera utilisé pour le K suivant.
-        }
-
-        // On trouve le maximum en valeur absolue.
-        ArrayList<Integer> Fpositif = new ArrayList<Integer>();
-        for (Integer i : F) {
-            Fpositif.add(Math.abs(i));
-        }
-
-        // On trouve la maximum de Fpositif.
-        int maxF = Collections.max(Fpositif);
-
-        // On trouve la valeur décodé et débruitée.
-        int motDebruiteEtDecode;
-        int posMaxF = Fpositif.indexOf(maxF);
-
-        if (F.get(posMaxF) < 0) {
-            motDebruiteEtDecode = posMaxF + (int)Math.pow(2, r);
-        }
-        else {
-            motDebruiteEtDecode = posMaxF;
         }
-
-        // On retourne le mot encodé.
-        return this.encode(new BigInteger(String.valueOf(motDebruiteEtDecode)));
+        return output.toString();
     }
 
     public static void main(String[] args) {
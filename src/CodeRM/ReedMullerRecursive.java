@@ -0,0 +1,350 @@
+package CodeRM;
+
+/**
+ * Class to implement the Reed-Muller codes of any order (RM(m, r), order m, length 2^r).
+ *
+ * The code RM(m, r) is built recursively (Plotkin construction) :
+ *
+ *      RM(m, r) = { (u | u + v) : u in RM(m, r - 1), v in RM(m - 1, r - 1) }
+ *
+ * with RM(0, r) the repetition code and RM(r, r) all the words of 2^r bits.
+ *
+ * Size of word before encoding :   k = C(r, 0) + C(r, 1) + ... + C(r, m)
+ * Size of word after encoding :    2^r
+ * Minimal distance :               2^(r - m)
+ *
+ * A higher order carries more bits per encoded word, but corrects less errors.
+ *
+ * The first order RM(1, r) is the special case where the recursion stops : it is
+ * encoded and decoded with 'ReedMuller' (maximum likelihood with the Hadamard transform,
+ * better than the recursive decoding), with the bits of 'ReedMuller' (the recursion
+ * would order them as u then v), so both classes are compatible for m = 1
+ * (RM(1, 1) too, even if it contains all the words of 2 bits).
+ * In the recursion, the codes of order 1 are also encoded and decoded with 'ReedMuller'.
+ *
+ * Decoding is recursive (soft values, see 'ReedMuller.unalterSoft') :
+ *  - v is decoded from the product of the two halves (sign and minimum of the absolute values).
+ *  - u is decoded from the sum of the two halves, with the second half corrected by v.
+ * The cost is O(2^r * r).
+ *
+ * The words and encoded words are stored in a 'long[]' (bit i at position (i % 64) of the element (i / 64)).
+ * The bits of the word are : the bits of u, then the bits of v.
+ */
+public class ReedMullerRecursive {
+
+    private int m;
+    private int r;
+    private int length;
+    private int words;
+    private int dimension;
+
+    // Codes of order 1 used in the recursion, by rang.
+    private ReedMuller[] firstOrder;
+
+    // Buffers used by the decoding, allocated once per thread :
+    // the soft values of the sub-codes and the bits of the decoded encoded word.
+    private final ThreadLocal<float[]> values;
+    private final ThreadLocal<byte[]> bits;
+
+    /**
+     * Constructor with the order and the rang.
+     *
+     * @param order The order m of the code (0 <= m <= r).
+     * @param rang  The rang r of the code.
+     */
+    public ReedMullerRecursive(int order, int rang) {
+        if (order < 0 || order > rang) {
+            throw new IllegalArgumentException("The order must be between 0 and r.");
+        }
+        this.m = order;
+        this.r = rang;
+        this.length = 1 << rang;
+        this.words = (length + 63) >>> 6;
+        this.dimension = dimension(order, rang);
+        this.firstOrder = new ReedMuller[rang + 1];
+        // RM(1, i) appears in the recursion if r - i >= m - 1 (only RM(1, r) itself if m = 1).
+        for (int i = 1; i <= rang; i++) {
+            if (order == 1 ? i == rang : order > 1 && rang - i >= order - 1) {
+                firstOrder[i] = new ReedMuller(i);
+            }
+        }
+        final int size = length;
+        this.values = ThreadLocal.withInitial(() -> new float[2 * size]);
+        this.bits = ThreadLocal.withInitial(() -> new byte[size]);
+    }
+
+    /**
+     * Number of bits of a word of RM(m, r).
+     *
+     * @param m The order.
+     * @param r The rang.
+     * @return  C(r, 0) + C(r, 1) + ... + C(r, m).
+     */
+    public static int dimension(int m, int r) {
+        int k = 0;
+        int binomial = 1;
+        for (int i = 0; i <= Math.min(m, r); i++) {
+            k += binomial;
+            binomial = binomial * (r - i) / (i + 1);
+        }
+        return k;
+    }
+
+    public int getOrder() {
+        return m;
+    }
+
+    public int getRang() {
+        return r;
+    }
+
+    /**
+     * Get the number of bits of an encoded word (2^r).
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Get the number of bits of a word (k).
+     */
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Get the number of longs of an encoded word.
+     */
+    public int getWords() {
+        return words;
+    }
+
+    /**
+     * Get the number of longs of a word.
+     */
+    public int getMessageWords() {
+        return (dimension + 63) >>> 6;
+    }
+
+    /**
+     * Encode a word.
+     *
+     * @param word The word (k bits).
+     * @param code The array receiving the encoded word.
+     */
+    public void encode(long[] word, long[] code) {
+        if (r <= 6) {
+            code[0] = encodeSmall(word, 0, m, r);
+        }
+        else {
+            encodeLarge(word, 0, m, r, code, 0);
+        }
+    }
+
+    /**
+     * Encode a word of RM(m, r) with r <= 6, on a long.
+     *
+     * @param word   The words.
+     * @param offset The position of the first bit of the word.
+     * @return       The encoded word.
+     */
+    private long encodeSmall(long[] word, int offset, int m, int r) {
+        int n = 1 << r;
+        if (m == 0) {
+            return getBit(word, offset) == 0 ? 0 : mask(n);
+        }
+        if (m == 1) {
+            return firstOrder[r].encodeWord((int)getBits(word, offset, r + 1));
+        }
+        if (m >= r) {
+            return getBits(word, offset, n);
+        }
+        int half = n >>> 1;
+        long u = encodeSmall(word, offset, m, r - 1);
+        long v = encodeSmall(word, offset + dimension(m, r - 1), m - 1, r - 1);
+        return u | ((u ^ v) << half);
+    }
+
+    /**
+     * Encode a word of RM(m, r) with r > 6, in a 'long[]'.
+     *
+     * @param word   The words.
+     * @param offset The position of the first bit of the word.
+     * @param code   The array receiving the encoded word.
+     * @param first  The position of the encoded word in 'code'.
+     */
+    private void encodeLarge(long[] word, int offset, int m, int r, long[] code, int first) {
+        int count = 1 << (r - 6);
+        if (m == 0) {
+            long value = getBit(word, offset) == 0 ? 0 : -1L;
+            for (int k = 0; k < count; k++) {
+                code[first + k] = value;
+            }
+            return;
+        }
+        if (m == 1) {
+            firstOrder[r].encodeWord((int)getBits(word, offset, r + 1), code, first);
+            return;
+        }
+        if (m >= r) {
+            for (int k = 0; k < count; k++) {
+                code[first + k] = getBits(word, offset + (k << 6), 64);
+            }
+            return;
+        }
+        int half = count >>> 1;
+        int vOffset = offset + dimension(m, r - 1);
+        if (r - 1 <= 6) {
+            code[first] = encodeSmall(word, offset, m, r - 1);
+            code[first + 1] = code[first] ^ encodeSmall(word, vOffset, m - 1, r - 1);
+            return;
+        }
+        encodeLarge(word, offset, m, r - 1, code, first);
+        encodeLarge(word, vOffset, m - 1, r - 1, code, first + half);
+        for (int k = 0; k < half; k++) {
+            code[first + half + k] ^= code[first + k];
+        }
+    }
+
+    /**
+     * Decode an encoded word, with correction of the errors.
+     *
+     * @param code The received word.
+     * @param word The array receiving the decoded word (k bits).
+     */
+    public void decode(long[] code, long[] word) {
+        float[] y = values.get();
+        for (int i = 0; i < length; i++) {
+            y[i] = 1 - 2 * (int)((code[i >>> 6] >>> (i & 63)) & 1);
+        }
+        decodeValues(y, word);
+    }
+
+    /**
+     * Decode a word received with soft values (see 'ReedMuller.unalterSoft').
+     *
+     * @param values The soft values, 2^r values per word.
+     * @param offset The position of the first value of the word.
+     * @param word   The array receiving the decoded word (k bits).
+     */
+    public void decodeSoft(float[] values, int offset, long[] word) {
+        float[] y = this.values.get();
+        System.arraycopy(values, offset, y, 0, length);
+        decodeValues(y, word);
+    }
+
+    /**
+     * Decode the soft values at the beginning of 'y'.
+     */
+    private void decodeValues(float[] y, long[] word) {
+        for (int k = 0; k < getMessageWords(); k++) {
+            word[k] = 0;
+        }
+        decode(y, 0, length, m, r, word, 0, bits.get(), 0);
+    }
+
+    /**
+     * Decode a sub-code RM(m, r) recursively.
+     *
+     * @param y      The buffer of soft values, the values of the sub-code are at 'position'.
+     * @param position The position of the values of the sub-code in 'y'.
+     * @param free   The first free position in 'y', for the values of the next sub-codes.
+     * @param word   The decoded words.
+     * @param offset The position of the first bit of the decoded word.
+     * @param c      The bits of the decoded encoded word (one byte per bit).
+     * @param first  The position of the encoded word of the sub-code in 'c'.
+     */
+    private void decode(float[] y, int position, int free, int m, int r,
+                        long[] word, int offset, byte[] c, int first) {
+        int n = 1 << r;
+        if (m == 0) {
+            float sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += y[position + i];
+            }
+            int bit = sum < 0 ? 1 : 0;
+            setBit(word, offset, bit);
+            for (int i = 0; i < n; i++) {
+                c[first + i] = (byte)bit;
+            }
+            return;
+        }
+        if (m == 1) {
+            int decoded = firstOrder[r].unalterSoft(y, position, null, 0);
+            int low = decoded & (n - 1);
+            int last = decoded >>> r;
+            for (int i = 0; i <= r; i++) {
+                setBit(word, offset + i, (decoded >>> i) & 1);
+            }
+            for (int i = 0; i < n; i++) {
+                c[first + i] = (byte)((Integer.bitCount(low & i) & 1) ^ last);
+            }
+            return;
+        }
+        if (m >= r) {
+            for (int i = 0; i < n; i++) {
+                int bit = y[position + i] < 0 ? 1 : 0;
+                setBit(word, offset + i, bit);
+                c[first + i] = (byte)bit;
+            }
+            return;
+        }
+
+        int half = n >>> 1;
+
+        // Soft values of v : the product of the two halves.
+        for (int i = 0; i < half; i++) {
+            float a = y[position + i];
+            float b = y[position + half + i];
+            float min = Math.min(Math.abs(a), Math.abs(b));
+            y[free + i] = (a < 0) != (b < 0) ? -min : min;
+        }
+        decode(y, free, free + half, m - 1, r - 1, word, offset + dimension(m, r - 1), c, first + half);
+
+        // Soft values of u : the first half plus the second half corrected by v.
+        for (int i = 0; i < half; i++) {
+            float b = y[position + half + i];
+            y[free + i] = y[position + i] + (c[first + half + i] == 0 ? b : -b);
+        }
+        decode(y, free, free + half, m, r - 1, word, offset, c, first);
+
+        // Encoded word : (u | u + v).
+        for (int i = 0; i < half; i++) {
+            c[first + half + i] ^= c[first + i];
+        }
+    }
+
+    /**
+     * Get the bit at 'position'.
+     */
+    private static int getBit(long[] word, int position) {
+        return (int)((word[position >>> 6] >>> (position & 63)) & 1);
+    }
+
+    /**
+     * Set the bit at 'position' (the bit must be 0 before).
+     */
+    private static void setBit(long[] word, int position, int bit) {
+        word[position >>> 6] |= (long)bit << (position & 63);
+    }
+
+    /**
+     * Get 'count' bits (up to 64) from 'position'.
+     */
+    private static long getBits(long[] word, int position, int count) {
+        int index = position >>> 6;
+        int shift = position & 63;
+        long value = word[index] >>> shift;
+        if (shift != 0 && shift + count > 64 && index + 1 < word.length) {
+            value |= word[index + 1] << (64 - shift);
+        }
+        return value & mask(count);
+    }
+
+    /**
+     * Mask of the 'count' lower bits.
+     */
+    private static long mask(int count) {
+        return count >= 64 ? -1L : (1L << count) - 1;
+    }
+}
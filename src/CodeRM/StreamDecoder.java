@@ -0,0 +1,251 @@
+package CodeRM;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Class to unalter and decode a continuous stream of encoded words.
+ *
+ * The encoded words are read in chunks of a fixed number of words. Each chunk is
+ * unaltered and decoded (see 'ReedMuller.unalterBatch'), possibly by a pool of threads,
+ * and its decoded words are written in the output in the order of the input.
+ * So the first decoded words are written after one chunk, not after the whole stream.
+ *
+ * The memory is bounded : at most 'depth' chunks are decoded at the same time.
+ * When they are all busy, the next chunk is not read until the oldest one is written,
+ * so a slow output slows down the reading (back-pressure).
+ *
+ * Format of the input : the encoded words, 2^r bits each, one after the other, without header
+ * (bit i of the word j is the bit (j * 2^r + i) of the stream, bit 0 is the lowest bit of the
+ * first byte), as in the data of a packed file (see 'PackedCodewords').
+ * If r < 3, the stream ends with a complete byte : its unused bits are decoded as words too.
+ *
+ * Format of the output : the decoded words, (r + 8) / 8 bytes each (one byte if r <= 7),
+ * in little-endian.
+ *
+ * Usage : java CodeRM.StreamDecoder r [threads] < input > output
+ */
+public class StreamDecoder {
+
+    // Default number of words of a chunk (fewer if r > 8, see 'ReedMuller.chunkSize').
+    public static final int CHUNK_WORDS = 1 << 14;
+
+    private ReedMuller rm;
+    private int chunkWords;
+    private int threads;
+    private int depth;
+
+    // Number of bytes of a decoded word in the output.
+    private int messageBytes;
+
+    /**
+     * Constructor.
+     *
+     * @param rm         The code of the stream.
+     * @param chunkWords The number of words of a chunk (rounded up to a whole number of bytes if r < 3).
+     * @param threads    The number of threads decoding the chunks (1 to decode in the calling thread).
+     * @param depth      The maximal number of chunks decoded at the same time.
+     */
+    public StreamDecoder(ReedMuller rm, int chunkWords, int threads, int depth) {
+        if (chunkWords < 1 || threads < 1 || depth < 1) {
+            throw new IllegalArgumentException("The size of a chunk, the number of threads and the depth must be at least 1.");
+        }
+        this.rm = rm;
+        // Whole number of bytes to start each chunk on a byte (a word is a byte or more if r >= 3).
+        int wordsPerByte = Math.max(1, 8 >> rm.getRang());
+        this.chunkWords = (chunkWords + wordsPerByte - 1) / wordsPerByte * wordsPerByte;
+        this.threads = threads;
+        this.depth = depth;
+        this.messageBytes = (rm.getRang() + 8) / 8;
+    }
+
+    /**
+     * Constructor with chunks of 'CHUNK_WORDS' words decoded by all the processors.
+     *
+     * @param rm The code of the stream.
+     */
+    public StreamDecoder(ReedMuller rm) {
+        this(rm, rm.chunkSize(CHUNK_WORDS), Runtime.getRuntime().availableProcessors(),
+                2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Unalter and decode a stream.
+     *
+     * @param in  The encoded words.
+     * @param out The stream receiving the decoded words (flushed at the end, not closed).
+     * @return    The number of words decoded.
+     * @throws IOException If the input ends in the middle of a word, or can't be read or written.
+     */
+    public long decode(InputStream in, OutputStream out) throws IOException {
+        return decode(Channels.newChannel(in), out);
+    }
+
+    /**
+     * Unalter and decode a stream read from a channel.
+     *
+     * @param in  The channel of the encoded words.
+     * @param out The stream receiving the decoded words (flushed at the end, not closed).
+     * @return    The number of words decoded.
+     * @throws IOException If the input ends in the middle of a word, or can't be read or written.
+     */
+    public long decode(ReadableByteChannel in, OutputStream out) throws IOException {
+        ExecutorService pool = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        ArrayDeque<Future<Chunk>> pending = new ArrayDeque<Future<Chunk>>();
+        ArrayDeque<Chunk> free = new ArrayDeque<Chunk>();
+        long total = 0;
+        try {
+            boolean end = false;
+            while (!end) {
+                Chunk chunk = free.isEmpty() ? new Chunk() : free.pop();
+                end = !chunk.read(in);
+                if (chunk.count == 0) {
+                    free.push(chunk);
+                    break;
+                }
+                if (pool == null) {
+                    chunk.call();
+                    total += chunk.write(out);
+                    free.push(chunk);
+                    continue;
+                }
+                pending.add(pool.submit(chunk));
+                if (pending.size() >= depth) {
+                    Chunk done = await(pending.poll());
+                    total += done.write(out);
+                    free.push(done);
+                }
+            }
+            while (!pending.isEmpty()) {
+                total += await(pending.poll()).write(out);
+            }
+            out.flush();
+            return total;
+        }
+        finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Wait for a chunk to be decoded.
+     */
+    private static Chunk await(Future<Chunk> future) throws IOException {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decoding.");
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * A chunk of words with its buffers, reused for the next chunks once written.
+     */
+    private class Chunk implements Callable<Chunk> {
+        private final int r = rm.getRang();
+        private final int words = rm.getWords();
+        private final ByteBuffer input = ByteBuffer.allocate((int)(((long)chunkWords << r) >>> 3))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        private final long[] codes = new long[chunkWords * words];
+        private final int[] messages = new int[chunkWords];
+        private final byte[] output = new byte[chunkWords * messageBytes];
+        private int count;
+
+        /**
+         * Read the next words, until the chunk is full or the end of the stream.
+         *
+         * @return False if the end of the stream is reached.
+         */
+        boolean read(ReadableByteChannel in) throws IOException {
+            input.clear();
+            boolean more = true;
+            while (input.hasRemaining()) {
+                if (in.read(input) < 0) {
+                    more = false;
+                    break;
+                }
+            }
+            long bits = (long)input.position() << 3;
+            count = (int)(bits >>> r);
+            if ((bits & ((1L << r) - 1)) != 0) {
+                throw new IOException("The stream ends in the middle of an encoded word.");
+            }
+            return more;
+        }
+
+        /**
+         * Unalter and decode the words.
+         */
+        public Chunk call() {
+            int length = 1 << r;
+            if (r >= 6) {
+                for (int i = 0; i < count * words; i++) {
+                    codes[i] = input.getLong(i << 3);
+                }
+            }
+            else if (r >= 3) {
+                int bytes = length >>> 3;
+                for (int i = 0; i < count; i++) {
+                    long code = 0;
+                    for (int k = 0; k < bytes; k++) {
+                        code |= (input.get(i * bytes + k) & 0xffL) << (k << 3);
+                    }
+                    codes[i] = code;
+                }
+            }
+            else {
+                for (int i = 0; i < count; i++) {
+                    int position = i << r;
+                    codes[i] = ((input.get(position >>> 3) & 0xff) >>> (position & 7)) & ((1L << length) - 1);
+                }
+            }
+            rm.unalterBatch(codes, 0, messages, 0, count);
+            for (int i = 0; i < count; i++) {
+                int message = messages[i];
+                for (int k = 0; k < messageBytes; k++) {
+                    output[i * messageBytes + k] = (byte)(message >>> (k << 3));
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Write the decoded words.
+         *
+         * @return The number of words written.
+         */
+        int write(OutputStream out) throws IOException {
+            out.write(output, 0, count * messageBytes);
+            return count;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int r = Integer.parseInt(args[0]);
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        ReedMuller rm = new ReedMuller(r);
+        StreamDecoder decoder = new StreamDecoder(rm, rm.chunkSize(CHUNK_WORDS), threads, 2 * threads);
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16);
+        long count = decoder.decode(System.in, out);
+        System.err.println(count + " words decoded.");
+    }
+}
@@ -0,0 +1,345 @@
+package CodeRM;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics counted with striped counters ('LongAdder').
+ *
+ * Each counter is split in cells, a thread adds in its own cell, so threads
+ * recording at the same time don't wait for each other. The cells are summed
+ * when the values are read.
+ *
+ * Recorded values :
+ *  - The numbers of words encoded, decoded, corrected (at least one bit changed by the correction),
+ *    altered, and of bits flipped by the alteration.
+ *  - For the unaltered words : a histogram of the number of bits changed by the correction,
+ *    the number of ambiguous words (several nearest encoded words) and of uncorrectable words.
+ *  - For each operation : the number of calls, of words, the total duration and a histogram
+ *    of the durations. Each power of 2 of nanoseconds is split in 'SUB_BUCKETS' buckets,
+ *    so the bounds of a bucket are at most 25% apart, from 1 ns to 2^63 ns.
+ *
+ * The values can be dumped with 'toJson()' or read through JMX after 'register(name)'.
+ *
+ * Example :
+ *
+ *      StripedMetrics metrics = new StripedMetrics();
+ *      rm.setMetrics(metrics);
+ *      rm.unalterParallel(codes);
+ *      System.out.println(metrics.toJson());
+ */
+public class StripedMetrics implements Metrics, StripedMetricsMBean {
+
+    // Number of elements of the histogram of the bits changed by the correction.
+    public static final int FLIPS_BUCKETS = 65;
+
+    // Number of buckets per power of 2 in a histogram of durations.
+    public static final int SUB_BUCKETS = 4;
+
+    // Number of elements of a histogram of durations.
+    public static final int LATENCY_BUCKETS = 62 * SUB_BUCKETS;
+
+    private final LongAdder encoded = new LongAdder();
+    private final LongAdder decoded = new LongAdder();
+    private final LongAdder corrected = new LongAdder();
+    private final LongAdder ambiguous = new LongAdder();
+    private final LongAdder uncorrectable = new LongAdder();
+    private final LongAdder altered = new LongAdder();
+    private final LongAdder flipped = new LongAdder();
+    private final LongAdder[] flips = counters(FLIPS_BUCKETS);
+
+    // Per operation : number of calls, of words, total duration and histogram of the durations.
+    private final LongAdder[] calls = counters(Operation.values().length);
+    private final LongAdder[] words = counters(Operation.values().length);
+    private final LongAdder[] nanos = counters(Operation.values().length);
+    private final LongAdder[][] latencies = new LongAdder[Operation.values().length][];
+
+    /**
+     * Constructor.
+     */
+    public StripedMetrics() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = counters(LATENCY_BUCKETS);
+        }
+    }
+
+    /**
+     * Create 'n' counters.
+     */
+    private static LongAdder[] counters(int n) {
+        LongAdder[] adders = new LongAdder[n];
+        for (int i = 0; i < n; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Sum of counters.
+     */
+    private static long[] sums(LongAdder[] adders) {
+        long[] values = new long[adders.length];
+        for (int i = 0; i < adders.length; i++) {
+            values[i] = adders[i].sum();
+        }
+        return values;
+    }
+
+    public boolean isEnabled() {
+        return true;
+    }
+
+    public void encoded(long count) {
+        encoded.add(count);
+    }
+
+    public void decoded(long count) {
+        decoded.add(count);
+    }
+
+    public void corrected(int flips, boolean ambiguous, boolean uncorrectable) {
+        if (flips > 0) {
+            corrected.increment();
+        }
+        this.flips[Math.min(flips, FLIPS_BUCKETS - 1)].increment();
+        if (ambiguous) {
+            this.ambiguous.increment();
+        }
+        if (uncorrectable) {
+            this.uncorrectable.increment();
+        }
+    }
+
+    public void altered(long count, long flips) {
+        altered.add(count);
+        flipped.add(flips);
+    }
+
+    public void latency(Operation operation, long nanos, long count) {
+        int op = operation.ordinal();
+        calls[op].increment();
+        words[op].add(count);
+        this.nanos[op].add(nanos);
+        latencies[op][bucket(Math.max(0, nanos))].increment();
+    }
+
+    /**
+     * Bucket of a duration : the durations 0 to 3 have their own bucket, then each
+     * power of 2 is split in 4 buckets by the 2 bits after the highest bit set.
+     *
+     * @param nanos The duration (positive).
+     * @return      The bucket.
+     */
+    static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int)nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int)(nanos >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS * (exponent - 1) + sub;
+    }
+
+    /**
+     * Largest duration of a bucket (inverse of 'bucket').
+     *
+     * @param bucket The bucket.
+     * @return       The duration, in nanoseconds.
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + 1;
+        long lower = (long)(SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - 2);
+        return lower + (1L << (exponent - 2)) - 1;
+    }
+
+    public long getEncoded() {
+        return encoded.sum();
+    }
+
+    public long getDecoded() {
+        return decoded.sum();
+    }
+
+    public long getCorrected() {
+        return corrected.sum();
+    }
+
+    public long getAmbiguous() {
+        return ambiguous.sum();
+    }
+
+    public long getUncorrectable() {
+        return uncorrectable.sum();
+    }
+
+    public long getAltered() {
+        return altered.sum();
+    }
+
+    public long getFlipped() {
+        return flipped.sum();
+    }
+
+    public long[] getFlipsHistogram() {
+        return sums(flips);
+    }
+
+    /**
+     * Get the number of calls of an operation.
+     */
+    public long getCalls(Operation operation) {
+        return calls[operation.ordinal()].sum();
+    }
+
+    /**
+     * Get the total duration of an operation, in nanoseconds.
+     */
+    public long getNanos(Operation operation) {
+        return nanos[operation.ordinal()].sum();
+    }
+
+    /**
+     * Get the histogram of the durations of an operation.
+     *
+     * @param operation The operation.
+     * @return          The number of calls per bucket (see 'upperBound').
+     */
+    public long[] getLatencyHistogram(Operation operation) {
+        return sums(latencies[operation.ordinal()]);
+    }
+
+    /**
+     * Get an upper bound of a percentile of the durations of an operation.
+     *
+     * @param operation The operation.
+     * @param p         The percentile (between 0.0 and 1.0, e.g. 0.99).
+     * @return          The upper bound of the bucket containing the percentile, in nanoseconds
+     *                  (0 if there is no call).
+     */
+    public long getLatencyPercentile(Operation operation, double p) {
+        long[] histogram = getLatencyHistogram(operation);
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        long rank = (long)Math.ceil(p * total);
+        long seen = 0;
+        for (int b = 0; b < histogram.length; b++) {
+            seen += histogram[b];
+            if (seen >= rank && histogram[b] > 0) {
+                return upperBound(b);
+            }
+        }
+        return 0;
+    }
+
+    public String getJson() {
+        return toJson();
+    }
+
+    public void reset() {
+        encoded.reset();
+        decoded.reset();
+        corrected.reset();
+        ambiguous.reset();
+        uncorrectable.reset();
+        altered.reset();
+        flipped.reset();
+        for (LongAdder adder : flips) {
+            adder.reset();
+        }
+        for (int op = 0; op < latencies.length; op++) {
+            calls[op].reset();
+            words[op].reset();
+            nanos[op].reset();
+            for (LongAdder adder : latencies[op]) {
+                adder.reset();
+            }
+        }
+    }
+
+    /**
+     * Dump all the values in JSON.
+     *
+     * The histograms are written without their last empty buckets.
+     *
+     * @return The JSON object.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append('{');
+        json.append("\"encoded\":").append(getEncoded());
+        json.append(",\"decoded\":").append(getDecoded());
+        json.append(",\"corrected\":").append(getCorrected());
+        json.append(",\"ambiguous\":").append(getAmbiguous());
+        json.append(",\"uncorrectable\":").append(getUncorrectable());
+        json.append(",\"altered\":").append(getAltered());
+        json.append(",\"flipped\":").append(getFlipped());
+        json.append(",\"flips\":");
+        appendHistogram(json, getFlipsHistogram());
+        json.append(",\"latency\":{");
+        for (Operation operation : Operation.values()) {
+            int op = operation.ordinal();
+            if (op > 0) {
+                json.append(',');
+            }
+            json.append('"').append(operation.name().toLowerCase()).append("\":{");
+            json.append("\"calls\":").append(calls[op].sum());
+            json.append(",\"words\":").append(words[op].sum());
+            json.append(",\"nanos\":").append(nanos[op].sum());
+            json.append(",\"buckets\":");
+            appendHistogram(json, getLatencyHistogram(operation));
+            json.append('}');
+        }
+        json.append("}}");
+        return json.toString();
+    }
+
+    /**
+     * Append a histogram without its last empty buckets.
+     */
+    private static void appendHistogram(StringBuilder json, long[] histogram) {
+        int end = histogram.length;
+        while (end > 0 && histogram[end - 1] == 0) {
+            end--;
+        }
+        json.append('[');
+        for (int i = 0; i < end; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(histogram[i]);
+        }
+        json.append(']');
+    }
+
+    /**
+     * Register these metrics in the platform MBean server,
+     * with the name "CodeRM:type=Metrics,name=<name>".
+     *
+     * @param name The name of the metrics.
+     * @return     The name of the MBean.
+     * @throws JMException If the name is not valid or already used.
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("CodeRM:type=Metrics,name=" + ObjectName.quote(name));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /**
+     * Remove these metrics from the platform MBean server.
+     *
+     * @param objectName The name given by 'register'.
+     * @throws JMException If the MBean is not registered.
+     */
+    public static void unregister(ObjectName objectName) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    }
+}
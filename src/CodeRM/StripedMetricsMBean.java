@@ -0,0 +1,40 @@
+package CodeRM;
+
+/**
+ * Interface of 'StripedMetrics' read through JMX (see 'StripedMetrics.register').
+ */
+public interface StripedMetricsMBean {
+
+    long getEncoded();
+
+    long getDecoded();
+
+    /**
+     * Number of unaltered words with at least one bit changed by the correction.
+     */
+    long getCorrected();
+
+    long getAmbiguous();
+
+    long getUncorrectable();
+
+    long getAltered();
+
+    long getFlipped();
+
+    /**
+     * Number of unaltered words per number of bits changed by the correction.
+     * The last element counts the words with this number of changed bits or more.
+     */
+    long[] getFlipsHistogram();
+
+    /**
+     * All the values, in JSON.
+     */
+    String getJson();
+
+    /**
+     * Set all the values to 0.
+     */
+    void reset();
+}
@@ -1,4 +1,5 @@
 import Alteration.Alteration;
+import CodeRM.Batch;
 import CodeRM.ReedMuller;
 import Utilities.ParsePGM;
 
@@ -8,7 +9,14 @@ import java.math.*;
 
 public class Main {
 
-    public static void main(String[] args) throws IOException {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        // sans menu si le premier argument est une option (voir 'Batch')
+        // ex: -r 5 -p encode,alter:0.07,unalter,decode -i images -o sorties -t 4
+        if (Batch.accepts(args)) {
+            Batch.main(args);
+            return;
+        }
+
         // permet de prendre les entrées pour le menu
         // soit du clavier, d'un fichier ou de la ligne de commande
         Scanner in;
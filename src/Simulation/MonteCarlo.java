@@ -0,0 +1,429 @@
+package Simulation;
+
+import Alteration.Alteration;
+import CodeRM.Interleaver;
+import CodeRM.ReedMuller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monte Carlo simulation of the error rates of the Reed-Muller code.
+ *
+ * Random words are encoded, altered by a noise channel (see 'Alteration'),
+ * unaltered and decoded. The decoded word is compared with the original word
+ * to count the bit errors (BER) and the word errors (FER, frame error rate).
+ *
+ * The words are simulated by batches, on several threads. Each batch has its own
+ * generators, seeded from the seed of the simulation and the number of the batch,
+ * so the same seed gives the same results whatever the number of threads and the order
+ * in which they run the batches. The simulation stops when the number of words reaches
+ * the maximum, or earlier when the number of word errors reaches the target : the result
+ * counts the batches in order, up to the first one reaching the target.
+ *
+ * Usage : java Simulation.MonteCarlo [rMin rMax [maxWords [targetErrors [threads [seed]]]]]
+ *  Prints the error rates for each r and each line of 'LINES'.
+ *
+ * Usage : java Simulation.MonteCarlo burst r [maxWords [threads [seed]]]
+ *  Prints the error rates on a burst channel (see 'BURST') for each depth of interleaving of 'DEPTHS'.
+ */
+public class MonteCarlo {
+
+    // Lines (probability to flip a bit) of the default grid.
+    public static final double[] LINES = {0.01, 0.02, 0.05, 0.07, 0.1, 0.15, 0.2};
+
+    // Burst channel of the default grid : line in the good state, line in the bad state,
+    // probabilities to go to the bad state and back to the good state.
+    public static final double[] BURST = {0.001, 0.5, 0.002, 0.05};
+
+    // Depths of interleaving of the default grid.
+    public static final int[] DEPTHS = {1, 2, 4, 8, 16, 32, 64};
+
+    // Number of words of a batch (simulated by one thread with its own generators).
+    private static final int BATCH = 4096;
+
+    // Quantile of the normal law for the 95% confidence intervals.
+    private static final double Z = 1.959964;
+
+    /**
+     * Result of a simulation.
+     */
+    public static class Result {
+        public final int r;
+        public final double line;
+        public final long words;
+        public final long wordErrors;
+        public final long bitErrors;
+
+        public Result(int r, double line, long words, long wordErrors, long bitErrors) {
+            this.r = r;
+            this.line = line;
+            this.words = words;
+            this.wordErrors = wordErrors;
+            this.bitErrors = bitErrors;
+        }
+
+        /**
+         * Word (frame) error rate.
+         */
+        public double fer() {
+            return words == 0 ? 0 : (double)wordErrors / words;
+        }
+
+        /**
+         * Bit error rate, over the r + 1 bits of each word.
+         */
+        public double ber() {
+            return words == 0 ? 0 : (double)bitErrors / bits();
+        }
+
+        /**
+         * Number of bits decoded.
+         */
+        public long bits() {
+            return words * (r + 1);
+        }
+
+        /**
+         * 95% confidence interval of the word error rate (Wilson score).
+         *
+         * @return The lower and upper bounds.
+         */
+        public double[] ferInterval() {
+            return wilson(wordErrors, words);
+        }
+
+        /**
+         * 95% confidence interval of the bit error rate (Wilson score).
+         *
+         * @return The lower and upper bounds.
+         */
+        public double[] berInterval() {
+            return wilson(bitErrors, bits());
+        }
+
+        public String toString() {
+            double[] f = ferInterval();
+            double[] b = berInterval();
+            return String.format(Locale.ROOT,
+                    "r=%2d line=%.3f words=%10d FER=%.3e [%.3e, %.3e] BER=%.3e [%.3e, %.3e]",
+                    r, line, words, fer(), f[0], f[1], ber(), b[0], b[1]);
+        }
+    }
+
+    /**
+     * Wilson score interval of a proportion, at 95%.
+     *
+     * @param successes The number of successes.
+     * @param trials    The number of trials.
+     * @return          The lower and upper bounds.
+     */
+    public static double[] wilson(long successes, long trials) {
+        if (trials == 0) {
+            return new double[] {0, 1};
+        }
+        double n = trials;
+        double p = successes / n;
+        double z2 = Z * Z;
+        double center = (p + z2 / (2 * n)) / (1 + z2 / n);
+        double half = Z * Math.sqrt(p * (1 - p) / n + z2 / (4 * n * n)) / (1 + z2 / n);
+        return new double[] {Math.max(0, center - half), Math.min(1, center + half)};
+    }
+
+    private int threads;
+    private SplittableRandom random;
+
+    /**
+     * Constructor.
+     *
+     * @param threads The number of threads.
+     * @param seed    The seed of the generators.
+     */
+    public MonteCarlo(int threads, long seed) {
+        this.threads = Math.max(1, threads);
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Simulate the code RM(1, r) on a channel.
+     *
+     * @param r            The rang of the code.
+     * @param line         The probability to flip a bit.
+     * @param maxWords     The maximal number of words to simulate.
+     * @param targetErrors Stop when this number of word errors is reached (0 to never stop early).
+     * @return             The result.
+     */
+    public Result run(final int r, final double line, final long maxWords, final long targetErrors) throws InterruptedException {
+        final ReedMuller rm = new ReedMuller(r);
+        final long seed = random.nextLong();
+        final AtomicLong batches = new AtomicLong();
+        final Tally tally = new Tally(targetErrors);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> {
+                    long[] code = new long[rm.getWords()];
+                    int size = 2 << r;
+                    while (true) {
+                        // Take the next batch of words, only if the target is not reached :
+                        // a batch taken is always simulated, so the batches done have no gap.
+                        if (tally.reached()) {
+                            return;
+                        }
+                        long index = batches.getAndIncrement();
+                        long first = index * BATCH;
+                        if (first >= maxWords) {
+                            return;
+                        }
+                        int batch = (int)Math.min(BATCH, maxWords - first);
+                        SplittableRandom messages = new SplittableRandom(seed(seed, index));
+                        Alteration channel = new Alteration(line, messages.nextLong());
+                        long localWordErrors = 0;
+                        long localBitErrors = 0;
+                        for (int i = 0; i < batch; i++) {
+                            int message = messages.nextInt(size);
+                            int decoded;
+                            if (rm.getWords() == 1) {
+                                long c = channel.alter(rm.encodeWord(message), rm.getLength());
+                                decoded = rm.decodeWord(rm.unalterWord(c));
+                            }
+                            else {
+                                rm.encodeWord(message, code);
+                                channel.alterWord(code, rm.getLength());
+                                rm.unalterWord(code, code);
+                                decoded = rm.decodeWord(code);
+                            }
+                            int errors = Integer.bitCount(message ^ decoded);
+                            if (errors != 0) {
+                                localWordErrors++;
+                                localBitErrors += errors;
+                            }
+                        }
+                        tally.add(index, batch, localWordErrors, localBitErrors);
+                    }
+                }));
+            }
+            await(futures);
+        }
+        finally {
+            pool.shutdown();
+        }
+        return tally.result(r, line);
+    }
+
+    /**
+     * Simulate the code RM(1, r) on a channel, with the words interleaved by blocks.
+     *
+     * The words are encoded by blocks of 'depth' words, interleaved (see 'Interleaver'),
+     * altered by the channel as one stream of bits, deinterleaved, unaltered and decoded.
+     * Each batch of words uses a channel with the parameters of 'channel', seeded for this batch
+     * (see 'Alteration.split(long)') : a burst can't go from one batch to the next.
+     * With a burst channel, the benefit of the interleaving is the difference with 'depth' = 1.
+     *
+     * @param r            The rang of the code.
+     * @param channel      The noise channel (e.g. a burst channel), giving the parameters of the channels of the batches.
+     * @param depth        The number of words of a block (1 : no interleaving).
+     * @param maxWords     The maximal number of words to simulate.
+     * @param targetErrors Stop when this number of word errors is reached (0 to never stop early).
+     * @return             The result.
+     */
+    public Result run(final int r, final Alteration channel, final int depth, final long maxWords, final long targetErrors)
+            throws InterruptedException {
+        final ReedMuller rm = new ReedMuller(r);
+        final Interleaver interleaver = new Interleaver(rm, depth);
+        final int batchWords = Math.max(1, BATCH / depth) * depth;
+        final long seed = random.nextLong();
+        final AtomicLong batches = new AtomicLong();
+        final Tally tally = new Tally(targetErrors);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> {
+                    int[] block = new int[depth];
+                    int[] decoded = new int[depth];
+                    long[] codes = new long[depth * rm.getWords()];
+                    long[] code = new long[rm.getWords()];
+                    int size = 2 << r;
+                    while (true) {
+                        // Take the next batch of words, only if the target is not reached :
+                        // a batch taken is always simulated, so the batches done have no gap.
+                        if (tally.reached()) {
+                            return;
+                        }
+                        long index = batches.getAndIncrement();
+                        long first = index * batchWords;
+                        if (first >= maxWords) {
+                            return;
+                        }
+                        int batch = (int)Math.min(batchWords, maxWords - first);
+                        SplittableRandom messages = new SplittableRandom(seed(seed, index));
+                        Alteration batchChannel = channel.split(messages.nextLong());
+                        long localWordErrors = 0;
+                        long localBitErrors = 0;
+                        for (int done = 0; done < batch; done += depth) {
+                            int count = Math.min(depth, batch - done);
+                            for (int i = 0; i < count; i++) {
+                                block[i] = messages.nextInt(size);
+                                rm.encodeWord(block[i], code);
+                                System.arraycopy(code, 0, codes, i * code.length, code.length);
+                            }
+                            long[] sent = interleaver.interleave(count == depth ? codes : Arrays.copyOf(codes, count * code.length));
+                            batchChannel.alter(sent, 0, count, code.length, rm.getLength());
+                            rm.unalterBatch(interleaver.deinterleave(sent), 0, decoded, 0, count);
+                            for (int i = 0; i < count; i++) {
+                                int errors = Integer.bitCount(block[i] ^ decoded[i]);
+                                if (errors != 0) {
+                                    localWordErrors++;
+                                    localBitErrors += errors;
+                                }
+                            }
+                        }
+                        tally.add(index, batch, localWordErrors, localBitErrors);
+                    }
+                }));
+            }
+            await(futures);
+        }
+        finally {
+            pool.shutdown();
+        }
+        return tally.result(r, channel.getLine());
+    }
+
+    /**
+     * Wait for the end of the tasks.
+     *
+     * @throws RuntimeException With the cause of the first task which failed.
+     */
+    private static void await(List<Future<?>> futures) throws InterruptedException {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            }
+            catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Seed of the generator of a batch, from the seed of the simulation and the number of the batch.
+     * The bits are mixed, so the batches have independent generators.
+     */
+    private static long seed(long seed, long index) {
+        return mix(seed ^ mix(index + 0x9e3779b97f4a7c15L));
+    }
+
+    /**
+     * Mix the bits of a long (finalizer of MurmurHash3).
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    /**
+     * Counts of the batches of a simulation.
+     *
+     * Without target of word errors, all the batches are counted.
+     * With a target, the counts of each batch are kept, and the result counts the batches
+     * in the order of their numbers, up to the first one reaching the target. All the batches
+     * before it are done : the batches are taken in order, only while the target is not reached
+     * by the batches done, and a batch taken is always simulated to the end.
+     */
+    private static class Tally {
+
+        private final long targetErrors;
+        private final AtomicLong words = new AtomicLong();
+        private final AtomicLong wordErrors = new AtomicLong();
+        private final AtomicLong bitErrors = new AtomicLong();
+
+        // Counts of each batch (words, word errors, bit errors), only with a target.
+        private final ConcurrentHashMap<Long, long[]> batches = new ConcurrentHashMap<Long, long[]>();
+
+        Tally(long targetErrors) {
+            this.targetErrors = targetErrors;
+        }
+
+        /**
+         * Add the counts of a batch.
+         */
+        void add(long index, long batchWords, long batchWordErrors, long batchBitErrors) {
+            if (targetErrors > 0) {
+                batches.put(index, new long[] {batchWords, batchWordErrors, batchBitErrors});
+            }
+            words.getAndAdd(batchWords);
+            wordErrors.getAndAdd(batchWordErrors);
+            bitErrors.getAndAdd(batchBitErrors);
+        }
+
+        /**
+         * Tell if the target of word errors is reached by the batches done.
+         */
+        boolean reached() {
+            return targetErrors > 0 && wordErrors.get() >= targetErrors;
+        }
+
+        /**
+         * Get the result, once all the threads are done.
+         */
+        Result result(int r, double line) {
+            if (targetErrors <= 0) {
+                return new Result(r, line, words.get(), wordErrors.get(), bitErrors.get());
+            }
+            long totalWords = 0;
+            long totalWordErrors = 0;
+            long totalBitErrors = 0;
+            for (long index = 0; batches.containsKey(index) && totalWordErrors < targetErrors; index++) {
+                long[] counts = batches.get(index);
+                totalWords += counts[0];
+                totalWordErrors += counts[1];
+                totalBitErrors += counts[2];
+            }
+            return new Result(r, line, totalWords, totalWordErrors, totalBitErrors);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length > 0 && args[0].equals("burst")) {
+            int r = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+            long maxWords = args.length > 2 ? Long.parseLong(args[2]) : 1000000;
+            int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+            long seed = args.length > 4 ? Long.parseLong(args[4]) : 0;
+
+            MonteCarlo simulation = new MonteCarlo(threads, seed);
+            for (int depth : DEPTHS) {
+                Alteration channel = new Alteration(BURST[0], BURST[1], BURST[2], BURST[3], seed);
+                System.out.println("depth=" + depth + " " + simulation.run(r, channel, depth, maxWords, 0));
+            }
+            return;
+        }
+        int rMin = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int rMax = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        long maxWords = args.length > 2 ? Long.parseLong(args[2]) : 1000000;
+        long targetErrors = args.length > 3 ? Long.parseLong(args[3]) : 1000;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 0;
+
+        MonteCarlo simulation = new MonteCarlo(threads, seed);
+        for (int r = rMin; r <= rMax; r++) {
+            for (double line : LINES) {
+                System.out.println(simulation.run(r, line, maxWords, targetErrors));
+            }
+        }
+    }
+}
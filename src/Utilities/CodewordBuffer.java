@@ -0,0 +1,205 @@
+package Utilities;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Encoded words of a frame, stored off-heap (direct 'ByteBuffer').
+ *
+ * The words are packed one after the other, 2^r bits each, as in the data of a
+ * packed file (see 'PackedCodewords') : bit i of the word j is the bit (j * 2^r + i)
+ * of the buffer, bit 0 is the lowest bit of the first byte. So 'count' words take
+ * exactly count * 2^r / 8 bytes (rounded up to a byte), outside of the heap : a big
+ * frame doesn't put any pressure on the garbage collector.
+ *
+ * The words can be read and written in place by 'ReedMuller' and 'Alteration'.
+ * If r < 3, several words share a byte : two threads must not write words of the same byte.
+ */
+public class CodewordBuffer {
+
+    private ByteBuffer data;
+    private int r;
+    private int length;
+    private int count;
+
+    /**
+     * Constructor with a buffer containing the words (e.g. a mapped file).
+     *
+     * @param r     The rang of the code (words of 2^r bits).
+     * @param count The number of words.
+     * @param data  The buffer, from its position (at least 'PackedCodewords.dataSize(r, count)' bytes).
+     */
+    public CodewordBuffer(int r, int count, ByteBuffer data) {
+        if (r < 0 || r > 30 || count < 0 || PackedCodewords.dataSize(r, count) > data.remaining()) {
+            throw new IllegalArgumentException("The buffer is too small for " + count + " words of 2^" + r + " bits.");
+        }
+        this.r = r;
+        this.length = 1 << r;
+        this.count = count;
+        this.data = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Allocate a buffer off-heap, all the bits at 0.
+     *
+     * @param r     The rang of the code (words of 2^r bits).
+     * @param count The number of words.
+     * @return      The buffer.
+     */
+    public static CodewordBuffer allocate(int r, int count) {
+        long size = PackedCodewords.dataSize(r, count);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many words for one buffer : " + count + ".");
+        }
+        return new CodewordBuffer(r, count, ByteBuffer.allocateDirect((int)size));
+    }
+
+    /**
+     * Copy the words in a new buffer off-heap with another number of words.
+     *
+     * @param count The number of words of the new buffer (the new words are at 0).
+     * @return      The new buffer.
+     */
+    public CodewordBuffer resize(int count) {
+        CodewordBuffer copy = allocate(r, count);
+        ByteBuffer source = getBuffer();
+        source.limit((int)PackedCodewords.dataSize(r, Math.min(this.count, count)));
+        copy.data.put(source).clear();
+        return copy;
+    }
+
+    public int getRang() {
+        return r;
+    }
+
+    /**
+     * Get the number of bits of a word (2^r).
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Get the number of words.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Get the number of longs of a word in a 'long[]'.
+     */
+    public int getWords() {
+        return r <= 6 ? 1 : 1 << (r - 6);
+    }
+
+    /**
+     * Get the buffer of the words (little-endian, shares the content).
+     */
+    public ByteBuffer getBuffer() {
+        return data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Get a word of 64 bits or less (r <= 6).
+     *
+     * @param index The number of the word.
+     * @return      The word.
+     */
+    public long get(int index) {
+        long position = (long)index << r;
+        int offset = (int)(position >>> 3);
+        switch (length) {
+            case 64:
+                return data.getLong(offset);
+            case 32:
+                return data.getInt(offset) & 0xffffffffL;
+            case 16:
+                return data.getShort(offset) & 0xffffL;
+            case 8:
+                return data.get(offset) & 0xffL;
+            default:
+                // Less than 8 bits, inside one byte.
+                return ((data.get(offset) & 0xff) >>> (position & 7)) & ((1L << length) - 1);
+        }
+    }
+
+    /**
+     * Set a word of 64 bits or less (r <= 6).
+     *
+     * @param index The number of the word.
+     * @param code  The word (the bits above 2^r are ignored).
+     */
+    public void set(int index, long code) {
+        long position = (long)index << r;
+        int offset = (int)(position >>> 3);
+        switch (length) {
+            case 64:
+                data.putLong(offset, code);
+                break;
+            case 32:
+                data.putInt(offset, (int)code);
+                break;
+            case 16:
+                data.putShort(offset, (short)code);
+                break;
+            case 8:
+                data.put(offset, (byte)code);
+                break;
+            default:
+                // Less than 8 bits, inside one byte.
+                int shift = (int)(position & 7);
+                int mask = ((1 << length) - 1) << shift;
+                int value = (data.get(offset) & ~mask) | (((int)code << shift) & mask);
+                data.put(offset, (byte)value);
+        }
+    }
+
+    /**
+     * Get a word in a 'long[]'.
+     *
+     * @param index  The number of the word.
+     * @param dst    The array receiving the word.
+     * @param offset The position of the word in the array.
+     */
+    public void get(int index, long[] dst, int offset) {
+        if (r <= 6) {
+            dst[offset] = get(index);
+            return;
+        }
+        int words = getWords();
+        int position = (int)(((long)index << r) >>> 3);
+        for (int k = 0; k < words; k++) {
+            dst[offset + k] = data.getLong(position + (k << 3));
+        }
+    }
+
+    /**
+     * Set a word stored in a 'long[]'.
+     *
+     * @param index  The number of the word.
+     * @param src    The array containing the word.
+     * @param offset The position of the word in the array.
+     */
+    public void set(int index, long[] src, int offset) {
+        if (r <= 6) {
+            set(index, src[offset]);
+            return;
+        }
+        int words = getWords();
+        int position = (int)(((long)index << r) >>> 3);
+        for (int k = 0; k < words; k++) {
+            data.putLong(position + (k << 3), src[offset + k]);
+        }
+    }
+
+    /**
+     * Flip a bit.
+     *
+     * @param bit The number of the bit in the buffer (bit i of the word j : j * 2^r + i).
+     */
+    public void flip(long bit) {
+        int offset = (int)(bit >>> 3);
+        data.put(offset, (byte)(data.get(offset) ^ (1 << (bit & 7))));
+    }
+}
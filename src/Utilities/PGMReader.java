@@ -0,0 +1,513 @@
+package Utilities;
+
+import java.io.*;
+
+/**
+ * Class to read a PGM file value by value.
+ *
+ * The header is parsed once, at the construction.
+ * Then, the values (pixels or encoded words) are read one by one,
+ * directly from a buffer of bytes, without building a String for each value.
+ *
+ * The header is built as described in 'ParsePGM' :
+ *      - The first line contains "P2" (text) or "P5" (binary).
+ *      - Then we can have some comments (line starting with '#').
+ *      - The line containing the size of the image.
+ *      - The line containing the gray level.
+ * The header is read token by token, so the size and the gray level can also be
+ * on the same line, and the comments anywhere before the gray level. It ends after the
+ * gray level : in a text file, the first values can be on the line of the gray level.
+ * Other magic numbers than "P2" and "P5" are rejected.
+ *
+ * In a text file (P2), the values are written in decimal and separated by whitespaces.
+ * In a binary file (P5), they follow the header directly (after one whitespace) :
+ * one byte per value if the gray level is below 256, two bytes (most significant first)
+ * otherwise. The values are then read from the buffer of bytes, without any tokenizing.
+ * Both are read with the same methods, 'nextPixels' reads many values at once.
+ *
+ * An encoded word can be bigger than a long, so it can be read in a 'long[]'.
+ * In a 'long[]', bit i is at position (i % 64) of the element (i / 64).
+ *
+ * Usage :
+ *
+ *      PGMReader reader = PGMReader.open("lena_128x128_64.pgm");
+ *      while (reader.hasNext()) {
+ *          long value = reader.nextLong();
+ *      }
+ *      reader.close();
+ */
+public class PGMReader implements Closeable {
+
+    // Magic numbers of the text and binary files.
+    public static final String TEXT = "P2";
+    public static final String BINARY = "P5";
+
+    // Size of the buffer of bytes.
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private InputStream in;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+
+    // The header, as it is in the file, and its comments.
+    private String header;
+    private StringBuilder comments = new StringBuilder();
+    private String magic;
+    private int width;
+    private int height;
+    private int maxGray;
+
+    // Binary file (P5) and number of bytes of a value in it.
+    private boolean binary;
+    private int sampleBytes;
+
+    /**
+     * Constructor with the stream to read.
+     * The header is read immediately.
+     *
+     * @param in The stream containing the PGM file.
+     * @throws IOException If the stream can't be read or the header is invalid.
+     */
+    public PGMReader(InputStream in) throws IOException {
+        this.in = in;
+        readHeader();
+    }
+
+    /**
+     * Open a PGM file.
+     *
+     * @param filename  The filename to load.
+     * @return          The reader, positioned on the first value.
+     * @throws IOException If the file can't be read.
+     */
+    public static PGMReader open(String filename) throws IOException {
+        return new PGMReader(new FileInputStream(filename));
+    }
+
+    /**
+     * Read the header.
+     *
+     * The magic number, the size and the gray level, with the comments between them.
+     * The header keeps the whitespaces and the comments of the file (without the '\r').
+     */
+    private void readHeader() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        magic = readToken(sb);
+        if (magic == null) {
+            throw new EOFException("Empty PGM file.");
+        }
+        if (!magic.equals(TEXT) && !magic.equals(BINARY)) {
+            throw new IOException("Not a PGM file (" + TEXT + " or " + BINARY + ") : " + magic);
+        }
+        binary = magic.equals(BINARY);
+        String token = readToken(sb);
+        String other = readToken(sb);
+        if (token == null || other == null) {
+            throw new EOFException("PGM header without size.");
+        }
+        width = parseHeader(token);
+        height = parseHeader(other);
+        token = readToken(sb);
+        if (token == null) {
+            throw new EOFException("PGM header without gray level.");
+        }
+        maxGray = parseHeader(token);
+
+        // The end of the header : one whitespace in a binary file, in a text file the whitespaces
+        // and a comment up to the end of the line (the first value can be on the same line).
+        int c = read();
+        if (binary) {
+            if (maxGray < 1 || maxGray > 0xffff) {
+                throw new IOException("Invalid gray level in binary PGM header : " + maxGray);
+            }
+            sampleBytes = maxGray < 1 << 8 ? 1 : 2;
+            if (c >= 0 && c != '\r') {
+                sb.append((char)c);
+            }
+        }
+        else {
+            StringBuilder end = new StringBuilder();
+            while (c == ' ' || c == '\t' || c == '\r') {
+                if (c != '\r') {
+                    end.append((char)c);
+                }
+                c = read();
+            }
+            if (c == '#') {
+                while (c >= 0 && c != '\n') {
+                    if (c != '\r') {
+                        end.append((char)c);
+                        comments.append((char)c);
+                    }
+                    c = read();
+                }
+                comments.append('\n');
+            }
+            if (c == '\n' || c < 0) {
+                sb.append(end);
+            }
+            else {
+                // A value : put back the byte read.
+                position--;
+            }
+            sb.append('\n');
+        }
+        header = sb.toString();
+    }
+
+    /**
+     * Read a token of the header, with the whitespaces and the comments before it.
+     *
+     * @param sb The header, receiving the bytes read.
+     * @return   The token, or null at the end of the stream.
+     */
+    private String readToken(StringBuilder sb) throws IOException {
+        int c = read();
+        while (c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '#') {
+            if (c == '#') {
+                // A comment, up to the end of the line.
+                while (c >= 0 && c != '\n') {
+                    if (c != '\r') {
+                        sb.append((char)c);
+                        comments.append((char)c);
+                    }
+                    c = read();
+                }
+                comments.append('\n');
+                if (c < 0) {
+                    return null;
+                }
+            }
+            if (c != '\r') {
+                sb.append((char)c);
+            }
+            c = read();
+        }
+        if (c < 0) {
+            return null;
+        }
+        int start = sb.length();
+        while (c >= 0 && c != ' ' && c != '\n' && c != '\r' && c != '\t' && c != '#') {
+            sb.append((char)c);
+            c = read();
+        }
+        if (c >= 0) {
+            // Put back the byte read.
+            position--;
+        }
+        return sb.substring(start);
+    }
+
+    /**
+     * Parse a number of the header.
+     */
+    private static int parseHeader(String token) throws IOException {
+        try {
+            return Integer.parseInt(token);
+        }
+        catch (NumberFormatException e) {
+            throw new IOException("Invalid value in PGM header : " + token);
+        }
+    }
+
+    /**
+     * Read one byte.
+     *
+     * @return The byte, or -1 at the end of the stream.
+     */
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++] & 0xff;
+    }
+
+    /**
+     * Fill the buffer.
+     *
+     * @return False at the end of the stream.
+     */
+    private boolean fill() throws IOException {
+        limit = in.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Skip the whitespaces before the next value.
+     *
+     * @return The first byte of the value, or -1 at the end of the stream.
+     */
+    private int skipWhitespaces() throws IOException {
+        int c = read();
+        while (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+            c = read();
+        }
+        return c;
+    }
+
+    /**
+     * Read a value of a binary file.
+     *
+     * @return The value.
+     * @throws EOFException If the file ends in the middle of the value.
+     */
+    private int readSample() throws IOException {
+        int high = read();
+        if (high < 0) {
+            throw new EOFException("No more value in PGM file.");
+        }
+        if (sampleBytes == 1) {
+            return high;
+        }
+        int low = read();
+        if (low < 0) {
+            throw new EOFException("Truncated value at the end of PGM file.");
+        }
+        return (high << 8) | low;
+    }
+
+    /**
+     * Check if there is another value to read.
+     *
+     * @return True if there is another value.
+     */
+    public boolean hasNext() throws IOException {
+        if (binary) {
+            return position < limit || fill();
+        }
+        int c = skipWhitespaces();
+        if (c < 0) {
+            return false;
+        }
+        // Put back the byte read.
+        position--;
+        return true;
+    }
+
+    /**
+     * Read the next value as a long.
+     *
+     * A value bigger than a long is truncated to its 64 lower bits,
+     * so the unsigned encoded words of 64 bits are read correctly.
+     *
+     * @return The value.
+     * @throws IOException If the value is not a number.
+     */
+    public long nextLong() throws IOException {
+        if (binary) {
+            return readSample();
+        }
+        int c = skipWhitespaces();
+        boolean negative = false;
+        if (c == '-') {
+            negative = true;
+            c = read();
+        }
+        if (c < '0' || c > '9') {
+            throw new IOException("Invalid value in PGM file.");
+        }
+        long value = 0;
+        while (c >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            c = read();
+        }
+        if (c >= 0) {
+            position--;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Read the next value as an int.
+     *
+     * @return The value.
+     * @throws IOException If the value is not a number.
+     */
+    public int nextInt() throws IOException {
+        return (int)nextLong();
+    }
+
+    /**
+     * Read the next values as ints (e.g. the pixels of an image).
+     *
+     * In a binary file, the values are converted directly from the buffer of bytes.
+     *
+     * @param dst    The array receiving the values.
+     * @param offset The position of the first value in the array.
+     * @param length The maximal number of values to read.
+     * @return       The number of values read (less than 'length' only at the end of the file).
+     * @throws IOException If a value is not a number.
+     */
+    public int nextPixels(int[] dst, int offset, int length) throws IOException {
+        int n = 0;
+        if (!binary) {
+            while (n < length && hasNext()) {
+                dst[offset + n++] = nextInt();
+            }
+            return n;
+        }
+        while (n < length && (position < limit || fill())) {
+            if (sampleBytes == 1) {
+                int end = position + Math.min(length - n, limit - position);
+                while (position < end) {
+                    dst[offset + n++] = buffer[position++] & 0xff;
+                }
+            }
+            else if (limit - position < 2) {
+                // A value on two fillings of the buffer.
+                dst[offset + n++] = readSample();
+            }
+            else {
+                int end = position + (Math.min(length - n, (limit - position) >>> 1) << 1);
+                while (position < end) {
+                    dst[offset + n++] = ((buffer[position] & 0xff) << 8) | (buffer[position + 1] & 0xff);
+                    position += 2;
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Read the next value in a 'long[]'.
+     *
+     * A negative value is taken on 'bits' bits (two's complement),
+     * as the encoded words written as signed integers.
+     *
+     * @param dst       The array receiving the value.
+     * @param offset    The position of the value in the array.
+     * @param words     The number of longs of the value.
+     * @param bits      The number of bits of the value.
+     * @throws IOException If the value is not a number.
+     */
+    public void next(long[] dst, int offset, int words, int bits) throws IOException {
+        if (words == 1) {
+            long value = nextLong();
+            dst[offset] = bits < 64 ? value & ((1L << bits) - 1) : value;
+            return;
+        }
+        if (binary) {
+            throw new IOException("A binary PGM file can't contain values of " + bits + " bits.");
+        }
+        int c = skipWhitespaces();
+        boolean negative = false;
+        if (c == '-') {
+            negative = true;
+            c = read();
+        }
+        if (c < '0' || c > '9') {
+            throw new IOException("Invalid value in PGM file.");
+        }
+        for (int k = 0; k < words; k++) {
+            dst[offset + k] = 0;
+        }
+        // The digits are added by groups of 9 : one multiplication of all the longs per group.
+        while (c >= '0' && c <= '9') {
+            int group = 0;
+            int factor = 1;
+            while (factor < 1000000000 && c >= '0' && c <= '9') {
+                group = group * 10 + (c - '0');
+                factor *= 10;
+                c = read();
+            }
+            multiplyAdd(dst, offset, words, factor, group);
+        }
+        if (c >= 0) {
+            position--;
+        }
+        if (negative) {
+            negate(dst, offset, words);
+        }
+        if ((bits & 63) != 0) {
+            dst[offset + words - 1] &= (1L << (bits & 63)) - 1;
+        }
+    }
+
+    /**
+     * Compute value = value * factor + add on several longs.
+     */
+    private static void multiplyAdd(long[] value, int offset, int words, int factor, int add) {
+        long carry = add;
+        for (int k = 0; k < words; k++) {
+            long v = value[offset + k];
+            long low = (v & 0xffffffffL) * factor + carry;
+            long high = (v >>> 32) * factor + (low >>> 32);
+            value[offset + k] = (high << 32) | (low & 0xffffffffL);
+            carry = high >>> 32;
+        }
+    }
+
+    /**
+     * Compute value = -value on several longs (two's complement).
+     */
+    private static void negate(long[] value, int offset, int words) {
+        boolean carry = true;
+        for (int k = 0; k < words; k++) {
+            long v = ~value[offset + k];
+            if (carry) {
+                v++;
+                carry = v == 0;
+            }
+            value[offset + k] = v;
+        }
+    }
+
+    /**
+     * Get the header, as it is in the file.
+     *
+     * @return The header (with the '\n' at the end of each line).
+     */
+    public String getHeader() {
+        return header;
+    }
+
+    /**
+     * Get the magic number of the header ("P2" or "P5").
+     *
+     * @return The magic number.
+     */
+    public String getMagic() {
+        return magic;
+    }
+
+    /**
+     * Get the comments of the header.
+     *
+     * @return The comments, each one from its '#' and with a '\n' at the end ("" if none).
+     */
+    public String getComments() {
+        return comments.toString();
+    }
+
+    /**
+     * Tell if the values are in binary (P5).
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getMaxGray() {
+        return maxGray;
+    }
+
+    /**
+     * Close the stream.
+     */
+    public void close() throws IOException {
+        in.close();
+    }
+}
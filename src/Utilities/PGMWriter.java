@@ -0,0 +1,189 @@
+package Utilities;
+
+import java.io.*;
+
+/**
+ * Class to write a PGM file value by value.
+ *
+ * The header is written at the construction.
+ * Then, each value (pixel or encoded word) is written as an unsigned integer,
+ * followed by a space, directly in a buffer of bytes.
+ * The file is the same as the one written with 'ParsePGM.writeString'.
+ *
+ * If the magic number of the header is "P5", the file is binary : each value is written
+ * on one byte if the gray level is below 256, on two bytes (most significant first) otherwise.
+ * The values must then be between 0 and the gray level (e.g. pixels, see 'ParsePGM.header').
+ *
+ * An encoded word can be bigger than a long, so it can be written from a 'long[]'.
+ * In a 'long[]', bit i is at position (i % 64) of the element (i / 64).
+ */
+public class PGMWriter implements Closeable, Flushable {
+
+    // Size of the buffer of bytes.
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private OutputStream out;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0;
+
+    // Digits of a value, from the right.
+    private byte[] digits = new byte[20];
+
+    // Scratch used to write the values on several longs.
+    private int[] limbs = new int[0];
+
+    // Binary file (P5), its gray level and the number of bytes of a value.
+    private boolean binary;
+    private int maxGray;
+    private int sampleBytes;
+
+    /**
+     * Constructor with the stream and the header to write.
+     *
+     * @param out    The stream receiving the PGM file.
+     * @param header The header (with the '\n' at the end of each line).
+     * @throws IOException If the header can't be written.
+     */
+    public PGMWriter(OutputStream out, String header) throws IOException {
+        this.out = out;
+        byte[] bytes = header.getBytes("ISO-8859-1");
+        if (header.startsWith(PGMReader.BINARY)) {
+            PGMReader reader = new PGMReader(new ByteArrayInputStream(bytes));
+            binary = true;
+            maxGray = reader.getMaxGray();
+            sampleBytes = maxGray < 1 << 8 ? 1 : 2;
+        }
+        out.write(bytes);
+    }
+
+    /**
+     * Create a PGM file.
+     * If the file already exists, it is replaced.
+     *
+     * @param filename The name of the file.
+     * @param header   The header (with the '\n' at the end of each line).
+     * @return         The writer.
+     * @throws IOException If the file can't be created.
+     */
+    public static PGMWriter create(String filename, String header) throws IOException {
+        return new PGMWriter(new FileOutputStream(filename), header);
+    }
+
+    /**
+     * Write one byte.
+     */
+    private void write(int b) throws IOException {
+        if (position == buffer.length) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+        buffer[position++] = (byte)b;
+    }
+
+    /**
+     * Write a value (unsigned) followed by a space, or on 1 or 2 bytes in a binary file.
+     *
+     * @param value The value.
+     * @throws IOException If the file is binary and the value is bigger than the gray level.
+     */
+    public void writeLong(long value) throws IOException {
+        if (binary) {
+            if (Long.compareUnsigned(value, maxGray) > 0) {
+                throw new IOException("The value " + Long.toUnsignedString(value)
+                        + " is bigger than the gray level of the binary PGM file (" + maxGray + ").");
+            }
+            if (sampleBytes == 2) {
+                write((int)value >>> 8);
+            }
+            write((int)value);
+            return;
+        }
+        int n = 0;
+        do {
+            digits[n++] = (byte)('0' + Long.remainderUnsigned(value, 10));
+            value = Long.divideUnsigned(value, 10);
+        } while (value != 0);
+        while (n > 0) {
+            write(digits[--n]);
+        }
+        write(' ');
+    }
+
+    /**
+     * Write a value stored in a 'long[]' (unsigned) followed by a space.
+     *
+     * @param src    The array containing the value.
+     * @param offset The position of the value in the array.
+     * @param words  The number of longs of the value.
+     */
+    public void write(long[] src, int offset, int words) throws IOException {
+        if (words == 1) {
+            writeLong(src[offset]);
+            return;
+        }
+        if (binary) {
+            throw new IOException("A binary PGM file can't contain values of more than 64 bits.");
+        }
+        // Copy the value in limbs of 32 bits.
+        int size = words << 1;
+        if (limbs.length < size) {
+            limbs = new int[size];
+            digits = new byte[size * 10 + 1];
+        }
+        for (int k = 0; k < words; k++) {
+            limbs[k << 1] = (int)src[offset + k];
+            limbs[(k << 1) + 1] = (int)(src[offset + k] >>> 32);
+        }
+        while (size > 0 && limbs[size - 1] == 0) {
+            size--;
+        }
+        // Divide by 10^9 until the value is 0, each remainder gives 9 digits.
+        int n = 0;
+        do {
+            long remainder = 0;
+            for (int k = size - 1; k >= 0; k--) {
+                long current = (remainder << 32) | (limbs[k] & 0xffffffffL);
+                limbs[k] = (int)(current / 1000000000L);
+                remainder = current % 1000000000L;
+            }
+            while (size > 0 && limbs[size - 1] == 0) {
+                size--;
+            }
+            for (int d = 0; d < 9 && (size > 0 || remainder != 0 || d == 0 && n == 0); d++) {
+                digits[n++] = (byte)('0' + remainder % 10);
+                remainder /= 10;
+            }
+        } while (size > 0);
+        while (n > 0) {
+            write(digits[--n]);
+        }
+        write(' ');
+    }
+
+    /**
+     * Write the buffer in the stream.
+     */
+    public void flush() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+        out.flush();
+    }
+
+    /**
+     * Tell if the values are written in binary (P5).
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Write the end of the file and close the stream.
+     */
+    public void close() throws IOException {
+        if (!binary) {
+            write('\n');
+        }
+        flush();
+        out.close();
+    }
+}
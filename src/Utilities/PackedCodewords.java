@@ -0,0 +1,452 @@
+package Utilities;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class to access a file of encoded words in the binary packed format.
+ *
+ * The file is mapped in memory, the encoded words are read directly
+ * in the mapping, without parsing and without copying the file.
+ *
+ * Format of the file (all values in little-endian) :
+ *
+ *  - 4 bytes : "RMP1"
+ *  - int     : width of the image
+ *  - int     : height of the image
+ *  - int     : gray level of the image
+ *  - int     : r, each encoded word has 2^r bits
+ *  - int     : number of encoded words
+ *  - the encoded words, 2^r bits each, one after the other
+ *    (bit i of the word j is the bit (j * 2^r + i) of the data, bit 0 is the lowest bit of the first byte).
+ *  - optionally, up to the end of the file : the comments of the PGM header (ISO-8859-1),
+ *    each one from its '#' and with a '\n' at the end (see 'PGMReader.getComments').
+ *
+ * An encoded word takes 2^r / 8 bytes (r >= 3), against about 11 bytes per
+ * 32 bits word in the text format.
+ *
+ * A file bigger than the memory can be mapped by windows, with 'map(channel, first, size)'.
+ * The words are always accessed with their number in the whole file.
+ */
+public class PackedCodewords {
+
+    // First bytes of a packed file.
+    public static final int MAGIC = 'R' | 'M' << 8 | 'P' << 16 | '1' << 24;
+
+    // Size of the header in bytes.
+    public static final int HEADER_SIZE = 24;
+
+    // Maximal number of bytes of the comments read after the words.
+    private static final int MAX_COMMENTS = 1 << 16;
+
+    private ByteBuffer data;
+    private int width;
+    private int height;
+    private int maxGray;
+    private int r;
+    private int count;
+    private String comments;
+
+    // Words available in 'data' : from 'first' to 'first + size' (excluded),
+    // the word 'first' starts at the byte 'base' of 'data'.
+    private int first;
+    private int size;
+    private int base;
+
+    /**
+     * Constructor with a buffer containing a packed file.
+     *
+     * @param buffer The content of the file (header included).
+     * @throws IOException If the header is invalid.
+     */
+    public PackedCodewords(ByteBuffer buffer) throws IOException {
+        data = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (data.limit() < HEADER_SIZE) {
+            throw new IOException("Not a packed codewords file.");
+        }
+        readHeader(data);
+        if (dataSize(r, count) > data.limit() - HEADER_SIZE) {
+            throw new IOException("Truncated packed codewords file.");
+        }
+        first = 0;
+        size = count;
+        base = HEADER_SIZE;
+        int end = HEADER_SIZE + (int)dataSize(r, count);
+        byte[] bytes = new byte[Math.min(data.limit() - end, MAX_COMMENTS)];
+        ByteBuffer trailer = data.duplicate();
+        trailer.position(end);
+        trailer.get(bytes);
+        comments = new String(bytes, "ISO-8859-1");
+    }
+
+    /**
+     * Constructor for a window of a packed file.
+     */
+    private PackedCodewords(ByteBuffer header, ByteBuffer window, int first, int size, String comments) throws IOException {
+        readHeader(header);
+        this.comments = comments;
+        data = window.order(ByteOrder.LITTLE_ENDIAN);
+        this.first = first;
+        this.size = size;
+        this.base = 0;
+    }
+
+    /**
+     * Read and check the header.
+     *
+     * @param header The buffer containing the header (little-endian).
+     * @throws IOException If the header is invalid.
+     */
+    private void readHeader(ByteBuffer header) throws IOException {
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a packed codewords file.");
+        }
+        width = header.getInt(4);
+        height = header.getInt(8);
+        maxGray = header.getInt(12);
+        r = header.getInt(16);
+        count = header.getInt(20);
+        if (r < 0 || r > 30 || count < 0) {
+            throw new IOException("Invalid packed codewords header.");
+        }
+    }
+
+    /**
+     * Map a window of a packed file in memory (read only).
+     *
+     * Only the bytes of the words from 'first' to 'first + size' (excluded) are mapped,
+     * so a file bigger than the memory can be read window by window.
+     * If r < 3, 'first' must be a multiple of 8 (the window must start on a byte).
+     *
+     * @param channel The channel of the file.
+     * @param first   The number of the first word of the window.
+     * @param size    The maximal number of words of the window.
+     * @return        The encoded words of the window.
+     * @throws IOException If the file can't be mapped.
+     */
+    public static PackedCodewords map(FileChannel channel, int first, int size) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IOException("Not a packed codewords file.");
+            }
+        }
+        int r = header.getInt(16);
+        int count = header.getInt(20);
+        size = Math.max(0, Math.min(size, count - first));
+        long start = HEADER_SIZE + (((long)first << r) >>> 3);
+        long length = dataSize(r, size);
+        if (start + length > channel.size()) {
+            throw new IOException("Truncated packed codewords file.");
+        }
+        MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+
+        // The comments, after the last word.
+        long end = HEADER_SIZE + dataSize(r, count);
+        ByteBuffer trailer = ByteBuffer.allocate((int)Math.max(0, Math.min(channel.size() - end, MAX_COMMENTS)));
+        while (trailer.hasRemaining()) {
+            if (channel.read(trailer, end + trailer.position()) < 0) {
+                break;
+            }
+        }
+        String comments = new String(trailer.array(), 0, trailer.position(), "ISO-8859-1");
+        return new PackedCodewords(header, window, first, size, comments);
+    }
+
+    /**
+     * Map a packed file in memory (read only).
+     *
+     * @param filename The name of the file.
+     * @return         The encoded words of the file.
+     * @throws IOException If the file can't be mapped.
+     */
+    public static PackedCodewords map(String filename) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new PackedCodewords(buffer);
+        }
+        finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Number of bytes of 'count' encoded words of 2^r bits.
+     */
+    public static long dataSize(int r, long count) {
+        return ((count << r) + 7) >>> 3;
+    }
+
+    /**
+     * Write the header of a packed file.
+     *
+     * @param buffer  The buffer receiving the header (little-endian).
+     */
+    public static void writeHeader(ByteBuffer buffer, int width, int height, int maxGray, int r, int count) {
+        buffer.putInt(MAGIC);
+        buffer.putInt(width);
+        buffer.putInt(height);
+        buffer.putInt(maxGray);
+        buffer.putInt(r);
+        buffer.putInt(count);
+    }
+
+    /**
+     * Get an encoded word of 64 bits or less (r <= 6).
+     *
+     * @param index The number of the word.
+     * @return      The encoded word.
+     */
+    public long get(int index) {
+        int length = 1 << r;
+        long position = (long)(index - first) << r;
+        int offset = base + (int)(position >>> 3);
+        switch (length) {
+            case 64:
+                return data.getLong(offset);
+            case 32:
+                return data.getInt(offset) & 0xffffffffL;
+            case 16:
+                return data.getShort(offset) & 0xffffL;
+            case 8:
+                return data.get(offset) & 0xffL;
+            default:
+                // Less than 8 bits, inside one byte.
+                return ((data.get(offset) & 0xff) >>> (position & 7)) & ((1L << length) - 1);
+        }
+    }
+
+    /**
+     * Get an encoded word in a 'long[]'.
+     *
+     * @param index  The number of the word.
+     * @param dst    The array receiving the word.
+     * @param offset The position of the word in the array.
+     */
+    public void get(int index, long[] dst, int offset) {
+        if (r <= 6) {
+            dst[offset] = get(index);
+            return;
+        }
+        int words = 1 << (r - 6);
+        int position = base + (int)(((long)(index - first) << r) >>> 3);
+        for (int k = 0; k < words; k++) {
+            dst[offset + k] = data.getLong(position + (k << 3));
+        }
+    }
+
+    /**
+     * Get all the encoded words available.
+     *
+     * @return The encoded words, 'getWords()' longs per word.
+     */
+    public long[] toArray() {
+        int words = getWords();
+        long[] codes = new long[size * words];
+        for (int i = 0; i < size; i++) {
+            get(first + i, codes, i * words);
+        }
+        return codes;
+    }
+
+    /**
+     * Copy all the encoded words available in a buffer off-heap.
+     *
+     * @return The encoded words, in a new buffer that can be modified.
+     */
+    public CodewordBuffer toBuffer() {
+        CodewordBuffer buffer = CodewordBuffer.allocate(r, size);
+        ByteBuffer source = data.duplicate();
+        source.limit(base + (int)dataSize(r, size)).position(base);
+        buffer.getBuffer().put(source);
+        return buffer;
+    }
+
+    /**
+     * Get the number of longs of an encoded word.
+     */
+    public int getWords() {
+        return r <= 6 ? 1 : 1 << (r - 6);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getMaxGray() {
+        return maxGray;
+    }
+
+    public int getRang() {
+        return r;
+    }
+
+    /**
+     * Get the comments of the PGM header stored after the words.
+     *
+     * @return The comments, each one with a '\n' at the end ("" if none).
+     */
+    public String getComments() {
+        return comments;
+    }
+
+    /**
+     * Get the number of words of the whole file.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Get the number of the first word available (0 if the whole file is mapped).
+     */
+    public int getFirst() {
+        return first;
+    }
+
+    /**
+     * Get the number of words available (the number of words of the file if the whole file is mapped).
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Class to write a packed file word by word.
+     *
+     * The number of words is written in the header when the writer is closed.
+     */
+    public static class Writer implements Closeable {
+
+        private FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        private int r;
+        private int count = 0;
+        private String comments;
+
+        // Bits waiting to be written when the words are smaller than a byte.
+        private int pending = 0;
+        private int pendingBits = 0;
+
+        /**
+         * Create a packed file.
+         * If the file already exists, it is replaced.
+         *
+         * @param filename The name of the file.
+         * @throws IOException If the file can't be created.
+         */
+        public Writer(String filename, int width, int height, int maxGray, int r) throws IOException {
+            this(filename, width, height, maxGray, r, "");
+        }
+
+        /**
+         * Create a packed file keeping the comments of a PGM header.
+         * If the file already exists, it is replaced.
+         *
+         * @param filename The name of the file.
+         * @param comments The comments, each one with a '\n' at the end (see 'PGMReader.getComments').
+         * @throws IOException If the file can't be created.
+         */
+        public Writer(String filename, int width, int height, int maxGray, int r, String comments) throws IOException {
+            this.r = r;
+            this.comments = comments;
+            channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            writeHeader(buffer, width, height, maxGray, r, 0);
+        }
+
+        /**
+         * Make room for 'size' bytes in the buffer.
+         */
+        private void reserve(int size) throws IOException {
+            if (buffer.remaining() < size) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                buffer.clear();
+            }
+        }
+
+        /**
+         * Write an encoded word of 64 bits or less (r <= 6).
+         *
+         * @param code The encoded word.
+         */
+        public void write(long code) throws IOException {
+            reserve(8);
+            switch (1 << r) {
+                case 64:
+                    buffer.putLong(code);
+                    break;
+                case 32:
+                    buffer.putInt((int)code);
+                    break;
+                case 16:
+                    buffer.putShort((short)code);
+                    break;
+                case 8:
+                    buffer.put((byte)code);
+                    break;
+                default:
+                    // Less than 8 bits, accumulated until a byte is full.
+                    pending |= (int)(code & ((1L << (1 << r)) - 1)) << pendingBits;
+                    pendingBits += 1 << r;
+                    if (pendingBits == 8) {
+                        buffer.put((byte)pending);
+                        pending = 0;
+                        pendingBits = 0;
+                    }
+            }
+            count++;
+        }
+
+        /**
+         * Write an encoded word stored in a 'long[]'.
+         *
+         * @param code   The array containing the word.
+         * @param offset The position of the word in the array.
+         */
+        public void write(long[] code, int offset) throws IOException {
+            if (r <= 6) {
+                write(code[offset]);
+                return;
+            }
+            int words = 1 << (r - 6);
+            for (int k = 0; k < words; k++) {
+                reserve(8);
+                buffer.putLong(code[offset + k]);
+            }
+            count++;
+        }
+
+        /**
+         * Write the last bits, the comments, the number of words and close the file.
+         */
+        public void close() throws IOException {
+            if (pendingBits > 0) {
+                reserve(1);
+                buffer.put((byte)pending);
+            }
+            reserve(buffer.capacity());
+            ByteBuffer trailer = ByteBuffer.wrap(comments.getBytes("ISO-8859-1"));
+            while (trailer.hasRemaining()) {
+                channel.write(trailer);
+            }
+            ByteBuffer number = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            number.putInt(count).flip();
+            channel.write(number, 20);
+            channel.close();
+        }
+    }
+}
@@ -1,6 +1,12 @@
 package Utilities;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
 /**
  * Class to handle the PGM files.
@@ -10,7 +16,7 @@ import java.io.*;
  *  Get the header of the PGM file.
  *  Get the data of the PGM file.
  *
- *  Write a string at the end of a file.
+ *  Write a string in a file (the file is replaced).
  *      - Could be used to write the header in a new file of the data in a file containing already the header.
  *
  *  The header is built in the current form :
@@ -22,6 +28,23 @@ import java.io.*;
  *
  *  Each value is separated by a space.
  *
+ *  The PGM files can also be binary, with "P5" instead of "P2" : the values follow the header
+ *  on one byte each if the gray level is below 256, two bytes (most significant first) otherwise.
+ *  'PGMReader' reads both, 'PGMWriter' writes the format of its header (see 'header').
+ *  The methods working on a String ('read', 'readHeader', 'readData', 'writeString') are for text files only.
+ *
+ *  To read or write big files, the values can also be read or written one by one,
+ *  without loading the whole file in a String (see 'PGMReader' and 'PGMWriter').
+ *  The methods 'readPixels', 'readWords', 'writePixels' and 'writeWords' use them
+ *  to load or save the values in an array.
+ *
+ *  The encoded words can also be stored in a binary packed format (see 'PackedCodewords'),
+ *  with 'writePacked' and 'readPacked', or converted with 'textToPacked' and 'packedToText'.
+ *
+ *  For big frames, the pixels and the encoded words can be kept off-heap
+ *  ('PixelBuffer', 'CodewordBuffer') with 'readPixelBuffer', 'readWordBuffer', 'readPackedBuffer'
+ *  and the methods writing them.
+ *
  * @author  Axel Fahy
  *
  * @version 12.05.2015
@@ -37,16 +60,17 @@ public class ParsePGM {
      */
     public static String read(String filename) {
         // Load the file into a String.
-        String text = "";
+        StringBuilder text = new StringBuilder();
         try {
             BufferedReader br = new BufferedReader(new FileReader(filename));
             String line = br.readLine();
 
             while (line != null) {
-                text += line;
-                text += "\n";
+                text.append(line);
+                text.append('\n');
                 line = br.readLine();
             }
+            br.close();
         }
         catch (FileNotFoundException e) {
             System.out.println("File not found.");
@@ -54,7 +78,7 @@ public class ParsePGM {
         catch (IOException e) {
             e.printStackTrace();
         }
-        return text;
+        return text.toString();
     }
 
     /**
@@ -132,7 +156,7 @@ public class ParsePGM {
      * @return A string containing the data.
      */
     public static String readDataFile(String filename) {
-        String data = "";
+        StringBuilder data = new StringBuilder();
         try {
             BufferedReader br = new BufferedReader(new FileReader(filename));
             String line = br.readLine();
@@ -145,8 +169,8 @@ public class ParsePGM {
             // Get the data
             line = br.readLine();
             while (line != null) {
-                data += line;
-                data += '\n';
+                data.append(line);
+                data.append('\n');
                 line = br.readLine();
             }
             br.close();
@@ -157,7 +181,7 @@ public class ParsePGM {
         catch (IOException e) {
             e.printStackTrace();
         }
-        return data;
+        return data.toString();
     }
 
     /**
@@ -168,7 +192,7 @@ public class ParsePGM {
      * @return A string containing the data.
      */
     public static String readData(String s) {
-        String data = "";
+        StringBuilder data = new StringBuilder();
         try {
             BufferedReader br = new BufferedReader(new StringReader(s));
             String line = br.readLine();
@@ -181,8 +205,8 @@ public class ParsePGM {
             // Get the data
             line = br.readLine();
             while (line != null) {
-                data += line;
-                data += '\n';
+                data.append(line);
+                data.append('\n');
                 line = br.readLine();
             }
             br.close();
@@ -190,18 +214,19 @@ public class ParsePGM {
         catch (IOException e) {
             e.printStackTrace();
         }
-        return data;
+        return data.toString();
     }
 
     /**
-     * Write a string at the end of a file.
+     * Write a string in a file.
+     * If the file already exists, it is replaced.
      *
      * @param filename The name of the file.
      */
     public static void writeString(String filename, String s) {
         try {
             BufferedWriter bw = null;
-            bw = new BufferedWriter(new FileWriter(filename, true));
+            bw = new BufferedWriter(new FileWriter(filename));
             bw.write(s);
             bw.newLine();
             bw.flush();
@@ -215,5 +240,436 @@ public class ParsePGM {
         }
     }
 
+    /**
+     * Read all the pixels of a PGM file.
+     *
+     * The array is allocated for width * height pixels, it grows only
+     * if the file has more values than its size.
+     *
+     * @param reader The reader, positioned after the header.
+     * @return       The pixels.
+     * @throws IOException If the file can't be read, or the image is too large for one array.
+     */
+    public static int[] readPixels(PGMReader reader) throws IOException {
+        int[] pixels = new int[size(reader, 1)];
+        int count = reader.nextPixels(pixels, 0, pixels.length);
+        while (count == pixels.length && reader.hasNext()) {
+            pixels = Arrays.copyOf(pixels, Math.max(count << 1, 16));
+            count += reader.nextPixels(pixels, count, pixels.length - count);
+        }
+        return count == pixels.length ? pixels : Arrays.copyOf(pixels, count);
+    }
+
+    /**
+     * Get the number of values of the image of a reader : width * height * words.
+     *
+     * @param reader The reader, with the size of the image.
+     * @param words  The number of values of a pixel.
+     * @return       The number of values.
+     * @throws IOException If there are too many values for one array.
+     */
+    private static int size(PGMReader reader, int words) throws IOException {
+        long size = (long)reader.getWidth() * reader.getHeight() * words;
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IOException("The image is too large for one array : "
+                    + reader.getWidth() + "x" + reader.getHeight() + (words > 1 ? "x" + words : "") + ".");
+        }
+        return (int)size;
+    }
+
+    /**
+     * Read all the encoded words of a file.
+     *
+     * The words are stored one after the other, 'words' longs per encoded word.
+     * The array is allocated for width * height words, it grows only
+     * if the file has more values than its size.
+     *
+     * @param reader The reader, positioned after the header.
+     * @param words  The number of longs of an encoded word.
+     * @param bits   The number of bits of an encoded word (2^r).
+     * @return       The encoded words.
+     * @throws IOException If the file can't be read, or the image is too large for one array.
+     */
+    public static long[] readWords(PGMReader reader, int words, int bits) throws IOException {
+        long[] codes = new long[size(reader, words)];
+        int count = 0;
+        while (reader.hasNext()) {
+            if (count == codes.length) {
+                codes = Arrays.copyOf(codes, Math.max(count << 1, 16 * words));
+            }
+            reader.next(codes, count, words, bits);
+            count += words;
+        }
+        return count == codes.length ? codes : Arrays.copyOf(codes, count);
+    }
+
+    /**
+     * Write pixels in a PGM file.
+     * If the file already exists, it is replaced.
+     *
+     * @param filename The name of the file.
+     * @param header   The header (with the '\n' at the end of each line).
+     * @param pixels   The pixels.
+     * @throws IOException If the file can't be written.
+     */
+    public static void writePixels(String filename, String header, int[] pixels) throws IOException {
+        PGMWriter writer = PGMWriter.create(filename, header);
+        try {
+            for (int pixel : pixels) {
+                writer.writeLong(pixel);
+            }
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Write encoded words in a file.
+     * If the file already exists, it is replaced.
+     *
+     * @param filename The name of the file.
+     * @param header   The header (with the '\n' at the end of each line).
+     * @param codes    The encoded words, 'words' longs per encoded word.
+     * @param words    The number of longs of an encoded word.
+     * @throws IOException If the file can't be written.
+     */
+    public static void writeWords(String filename, String header, long[] codes, int words) throws IOException {
+        PGMWriter writer = PGMWriter.create(filename, header);
+        try {
+            for (int i = 0; i < codes.length; i += words) {
+                writer.write(codes, i, words);
+            }
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Write encoded words in a packed file.
+     * If the file already exists, it is replaced.
+     *
+     * @param filename The name of the file.
+     * @param width    The width of the image.
+     * @param height   The height of the image.
+     * @param maxGray  The gray level of the image.
+     * @param r        The rang of the code (words of 2^r bits).
+     * @param codes    The encoded words, one long per word if r <= 6, 2^(r-6) otherwise.
+     * @throws IOException If the file can't be written.
+     */
+    public static void writePacked(String filename, int width, int height, int maxGray, int r, long[] codes) throws IOException {
+        int words = r <= 6 ? 1 : 1 << (r - 6);
+        PackedCodewords.Writer writer = new PackedCodewords.Writer(filename, width, height, maxGray, r);
+        try {
+            for (int i = 0; i < codes.length; i += words) {
+                writer.write(codes, i);
+            }
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Read all the encoded words of a packed file.
+     *
+     * @param filename The name of the file.
+     * @return         The encoded words, one long per word if r <= 6, 2^(r-6) otherwise.
+     * @throws IOException If the file can't be read.
+     */
+    public static long[] readPacked(String filename) throws IOException {
+        return PackedCodewords.map(filename).toArray();
+    }
+
+    /**
+     * Read all the pixels of a PGM file in a buffer off-heap.
+     *
+     * The buffer is allocated for width * height pixels. If the file has
+     * another number of values, it is copied in a buffer of the right size.
+     *
+     * @param reader The reader, positioned after the header.
+     * @return       The pixels.
+     * @throws IOException If the file can't be read, or the image is too large for one array.
+     */
+    public static PixelBuffer readPixelBuffer(PGMReader reader) throws IOException {
+        PixelBuffer pixels = PixelBuffer.allocate(reader.getWidth(), reader.getHeight(), reader.getMaxGray(), size(reader, 1));
+        int[] chunk = new int[4096];
+        int count = 0;
+        int n;
+        while ((n = reader.nextPixels(chunk, 0, chunk.length)) > 0) {
+            if (count + n > pixels.getCount()) {
+                pixels = pixels.resize(Math.max(Math.max(count << 1, count + n), 16));
+            }
+            for (int i = 0; i < n; i++) {
+                pixels.set(count++, chunk[i]);
+            }
+        }
+        return count == pixels.getCount() ? pixels : pixels.resize(count);
+    }
+
+    /**
+     * Read all the encoded words of a file in a buffer off-heap.
+     *
+     * The buffer is allocated for width * height words. If the file has
+     * another number of words, it is copied in a buffer of the right size.
+     *
+     * @param reader The reader, positioned after the header.
+     * @param r      The rang of the code (words of 2^r bits).
+     * @return       The encoded words.
+     * @throws IOException If the file can't be read, or the image is too large for one array.
+     */
+    public static CodewordBuffer readWordBuffer(PGMReader reader, int r) throws IOException {
+        int size = size(reader, 1);
+        if (PackedCodewords.dataSize(r, size) > Integer.MAX_VALUE) {
+            throw new IOException("The image is too large for one buffer : " + size + " words of 2^" + r + " bits.");
+        }
+        CodewordBuffer codes = CodewordBuffer.allocate(r, size);
+        long[] code = new long[codes.getWords()];
+        int count = 0;
+        while (reader.hasNext()) {
+            if (count == codes.getCount()) {
+                codes = codes.resize(Math.max(count << 1, 16));
+            }
+            reader.next(code, 0, code.length, 1 << r);
+            codes.set(count++, code, 0);
+        }
+        return count == codes.getCount() ? codes : codes.resize(count);
+    }
 
+    /**
+     * Write the pixels of a buffer in a PGM file.
+     * If the file already exists, it is replaced.
+     *
+     * @param filename The name of the file.
+     * @param pixels   The pixels (with the size and the gray level of the image).
+     * @throws IOException If the file can't be written.
+     */
+    public static void writePixels(String filename, PixelBuffer pixels) throws IOException {
+        writePixels(filename, pixels, false);
+    }
+
+    /**
+     * Write the pixels of a buffer in a text (P2) or binary (P5) PGM file.
+     * If the gray level is below 256, the pixels of a binary file are written directly from the buffer.
+     * If the file already exists, it is replaced.
+     *
+     * @param filename The name of the file.
+     * @param pixels   The pixels (with the size and the gray level of the image).
+     * @param binary   True for a binary file.
+     * @throws IOException If the file can't be written, or a pixel is bigger than the gray level of a binary file.
+     */
+    public static void writePixels(String filename, PixelBuffer pixels, boolean binary) throws IOException {
+        String header = header(pixels.getWidth(), pixels.getHeight(), pixels.getMaxGray(), binary);
+        if (!binary || pixels.getMaxGray() >= 1 << 8) {
+            PGMWriter writer = PGMWriter.create(filename, header);
+            try {
+                for (int i = 0; i < pixels.getCount(); i++) {
+                    writer.writeLong(pixels.get(i));
+                }
+            }
+            finally {
+                writer.close();
+            }
+            return;
+        }
+        // One byte per pixel, as in the buffer.
+        for (int i = 0; i < pixels.getCount(); i++) {
+            if (pixels.get(i) > pixels.getMaxGray()) {
+                throw new IOException("The pixel " + i + " is bigger than the gray level (" + pixels.getMaxGray() + ").");
+            }
+        }
+        ByteBuffer head = ByteBuffer.wrap(header.getBytes("ISO-8859-1"));
+        ByteBuffer data = pixels.getBuffer();
+        FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            while (head.hasRemaining()) {
+                channel.write(head);
+            }
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+        finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Write the encoded words of a buffer in a file.
+     * If the file already exists, it is replaced.
+     *
+     * @param filename The name of the file.
+     * @param header   The header (with the '\n' at the end of each line).
+     * @param codes    The encoded words.
+     * @throws IOException If the file can't be written.
+     */
+    public static void writeWords(String filename, String header, CodewordBuffer codes) throws IOException {
+        PGMWriter writer = PGMWriter.create(filename, header);
+        long[] code = new long[codes.getWords()];
+        try {
+            for (int i = 0; i < codes.getCount(); i++) {
+                codes.get(i, code, 0);
+                writer.write(code, 0, code.length);
+            }
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Write the encoded words of a buffer in a packed file.
+     * The words are written directly from the buffer.
+     * If the file already exists, it is replaced.
+     *
+     * @param filename The name of the file.
+     * @param width    The width of the image.
+     * @param height   The height of the image.
+     * @param maxGray  The gray level of the image.
+     * @param codes    The encoded words.
+     * @throws IOException If the file can't be written.
+     */
+    public static void writePacked(String filename, int width, int height, int maxGray, CodewordBuffer codes) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(PackedCodewords.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        PackedCodewords.writeHeader(header, width, height, maxGray, codes.getRang(), codes.getCount());
+        header.flip();
+        ByteBuffer data = codes.getBuffer();
+        data.limit((int)PackedCodewords.dataSize(codes.getRang(), codes.getCount()));
+        FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+        finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Read all the encoded words of a packed file in a buffer off-heap.
+     *
+     * @param filename The name of the file.
+     * @return         The encoded words.
+     * @throws IOException If the file can't be read.
+     */
+    public static CodewordBuffer readPackedBuffer(String filename) throws IOException {
+        return PackedCodewords.map(filename).toBuffer();
+    }
+
+    /**
+     * Convert a file of encoded words from the text format to the packed format.
+     * The comments of the header are kept.
+     *
+     * @param text   The file in text format.
+     * @param packed The file in packed format (replaced if it exists).
+     * @param r      The rang of the code (words of 2^r bits).
+     * @throws IOException If a file can't be read or written.
+     */
+    public static void textToPacked(String text, String packed, int r) throws IOException {
+        int words = r <= 6 ? 1 : 1 << (r - 6);
+        long[] code = new long[words];
+        PGMReader reader = PGMReader.open(text);
+        try {
+            PackedCodewords.Writer writer = new PackedCodewords.Writer(packed,
+                    reader.getWidth(), reader.getHeight(), reader.getMaxGray(), r, reader.getComments());
+            try {
+                while (reader.hasNext()) {
+                    reader.next(code, 0, words, 1 << r);
+                    writer.write(code, 0);
+                }
+            }
+            finally {
+                writer.close();
+            }
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Convert a file of encoded words from the packed format to the text format.
+     * The comments stored in the packed file are written in the header.
+     *
+     * @param packed The file in packed format.
+     * @param text   The file in text format (replaced if it exists).
+     * @throws IOException If a file can't be read or written.
+     */
+    public static void packedToText(String packed, String text) throws IOException {
+        PackedCodewords codes = PackedCodewords.map(packed);
+        int words = codes.getWords();
+        long[] code = new long[words];
+        String header = header(codes.getWidth(), codes.getHeight(), codes.getMaxGray(), false, codes.getComments());
+        PGMWriter writer = PGMWriter.create(text, header);
+        try {
+            for (int i = 0; i < codes.getCount(); i++) {
+                codes.get(i, code, 0);
+                writer.write(code, 0, words);
+            }
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Build the header of a PGM file (without comment).
+     *
+     * @param width   The width of the image.
+     * @param height  The height of the image.
+     * @param maxGray The gray level of the image.
+     * @return        The header (with the '\n' at the end of each line).
+     */
+    public static String header(int width, int height, int maxGray) {
+        return header(width, height, maxGray, false);
+    }
+
+    /**
+     * Build the header of a text (P2) or binary (P5) PGM file (without comment).
+     *
+     * @param width   The width of the image.
+     * @param height  The height of the image.
+     * @param maxGray The gray level of the image.
+     * @param binary  True for a binary file.
+     * @return        The header (with the '\n' at the end of each line).
+     */
+    public static String header(int width, int height, int maxGray, boolean binary) {
+        return header(width, height, maxGray, binary, "");
+    }
+
+    /**
+     * Build the header of a text (P2) or binary (P5) PGM file with comments.
+     *
+     * @param width    The width of the image.
+     * @param height   The height of the image.
+     * @param maxGray  The gray level of the image.
+     * @param binary   True for a binary file.
+     * @param comments The comments, each one with a '\n' at the end (see 'PGMReader.getComments').
+     * @return         The header (with the '\n' at the end of each line).
+     */
+    public static String header(int width, int height, int maxGray, boolean binary, String comments) {
+        return (binary ? PGMReader.BINARY : PGMReader.TEXT) + "\n" + comments
+                + width + " " + height + "\n" + maxGray + "\n";
+    }
+
+    /**
+     * Change the format of a header, keeping its comments.
+     *
+     * @param header The header (e.g. 'PGMReader.getHeader()').
+     * @param binary True for a binary file (P5), false for a text file (P2).
+     * @return       The header with the magic number of the format.
+     */
+    public static String header(String header, boolean binary) {
+        if (!header.startsWith(PGMReader.TEXT) && !header.startsWith(PGMReader.BINARY)) {
+            throw new IllegalArgumentException("Not a PGM header : " + header);
+        }
+        return (binary ? PGMReader.BINARY : PGMReader.TEXT) + header.substring(2);
+    }
 }
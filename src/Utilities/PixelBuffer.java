@@ -0,0 +1,144 @@
+package Utilities;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Pixels of a frame, stored off-heap (direct 'ByteBuffer').
+ *
+ * There are usually width * height pixels, but a buffer can have another number
+ * of pixels (e.g. a file with more values than its size).
+ * Each pixel takes 1, 2 or 4 bytes (little-endian), the smallest size
+ * holding the values up to the gray level. So a frame of w x h pixels
+ * with a gray level below 256 takes exactly w * h bytes outside of the heap.
+ */
+public class PixelBuffer {
+
+    private ByteBuffer data;
+    private int width;
+    private int height;
+    private int maxGray;
+    private int count;
+
+    // Number of bytes of a pixel.
+    private int bytes;
+
+    /**
+     * Constructor.
+     */
+    private PixelBuffer(int width, int height, int maxGray, long size) {
+        if (width < 0 || height < 0 || maxGray < 0 || size < 0) {
+            throw new IllegalArgumentException("Invalid size of image : " + width + "x" + height + ".");
+        }
+        this.bytes = maxGray < 1 << 8 ? 1 : maxGray < 1 << 16 ? 2 : 4;
+        if (size * bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many pixels for one buffer : " + size + ".");
+        }
+        this.width = width;
+        this.height = height;
+        this.maxGray = maxGray;
+        this.count = (int)size;
+        this.data = ByteBuffer.allocateDirect(count * bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Allocate a frame off-heap, all the pixels at 0.
+     *
+     * @param width   The width of the image.
+     * @param height  The height of the image.
+     * @param maxGray The gray level of the image (the largest value of a pixel).
+     * @return        The frame.
+     */
+    public static PixelBuffer allocate(int width, int height, int maxGray) {
+        return new PixelBuffer(width, height, maxGray, (long)width * height);
+    }
+
+    /**
+     * Allocate a frame off-heap with a number of pixels, all the pixels at 0.
+     *
+     * @param width   The width of the image.
+     * @param height  The height of the image.
+     * @param maxGray The gray level of the image (the largest value of a pixel).
+     * @param count   The number of pixels.
+     * @return        The frame.
+     */
+    public static PixelBuffer allocate(int width, int height, int maxGray, int count) {
+        return new PixelBuffer(width, height, maxGray, count);
+    }
+
+    /**
+     * Copy the pixels in a new buffer with another number of pixels.
+     *
+     * @param count The number of pixels of the new buffer (the new pixels are at 0).
+     * @return      The new buffer.
+     */
+    public PixelBuffer resize(int count) {
+        PixelBuffer copy = new PixelBuffer(width, height, maxGray, count);
+        ByteBuffer source = getBuffer();
+        source.limit(Math.min(this.count, count) * bytes);
+        copy.data.put(source).clear();
+        return copy;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getMaxGray() {
+        return maxGray;
+    }
+
+    /**
+     * Get the number of pixels (usually width * height).
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Get the buffer of the pixels (little-endian, shares the content).
+     */
+    public ByteBuffer getBuffer() {
+        return data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Get a pixel.
+     *
+     * @param index The number of the pixel.
+     * @return      The value.
+     */
+    public int get(int index) {
+        switch (bytes) {
+            case 1:
+                return data.get(index) & 0xff;
+            case 2:
+                return data.getShort(index << 1) & 0xffff;
+            default:
+                return data.getInt(index << 2);
+        }
+    }
+
+    /**
+     * Set a pixel.
+     *
+     * @param index The number of the pixel.
+     * @param value The value (the bits above the size of a pixel are ignored).
+     */
+    public void set(int index, int value) {
+        switch (bytes) {
+            case 1:
+                data.put(index, (byte)value);
+                break;
+            case 2:
+                data.putShort(index << 1, (short)value);
+                break;
+            default:
+                data.putInt(index << 2, value);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package Alteration;
+
+/**
+ * Tests of 'Alteration' as a noise channel : in the long run, the part of the bits flipped
+ * is 'getLine()', for the words altered together or one by one, and a burst channel
+ * flips its bits in bursts.
+ *
+ * Run (see 'Utilities.PGMReaderTest') :
+ *
+ *      java -cp out Alteration.AlterationTest
+ */
+public class AlterationTest {
+
+    // Number of words of 64 bits altered for a rate.
+    private static final int WORDS = 200000;
+
+    public static void main(String[] args) {
+        testRate(new Alteration(0.05, 1), false);
+        testRate(new Alteration(0.01, 0.4, 0.02, 0.1, 2), true);
+        testRate(new Alteration(0.0, 0.5, 0.001, 0.05, 3), true);
+        testRate(new Alteration(0.02, 0.02, 0.3, 0.3, 4), false);
+        testSplit(new Alteration(0.01, 0.4, 0.02, 0.1, 5));
+        System.out.println("AlterationTest : OK");
+    }
+
+    /**
+     * The part of the bits flipped is 'getLine()' with the three ways to alter words.
+     * If 'bursty', a bit after a flipped bit is flipped much more often than the others,
+     * otherwise as often.
+     */
+    static void testRate(Alteration channel, boolean bursty) {
+        double line = channel.getLine();
+
+        long[] codes = new long[WORDS];
+        channel.alter(codes, 0, WORDS, 1, 64);
+        checkRate(codes, line, bursty, "alter(long[]), line = " + line);
+
+        codes = new long[WORDS];
+        long[] code = new long[1];
+        for (int i = 0; i < WORDS; i++) {
+            code[0] = 0;
+            channel.alterWord(code, 64);
+            codes[i] = code[0];
+        }
+        checkRate(codes, line, bursty, "alterWord, line = " + line);
+
+        codes = new long[WORDS];
+        for (int i = 0; i < WORDS; i++) {
+            codes[i] = channel.alter(0L, 64);
+        }
+        checkRate(codes, line, bursty, "alter(long), line = " + line);
+    }
+
+    /**
+     * Channels split with a seed start in the state of the long run : many channels
+     * altering a few words each flip the same part of the bits.
+     */
+    static void testSplit(Alteration channel) {
+        long[] codes = new long[WORDS];
+        for (int c = 0; c < WORDS / 4; c++) {
+            channel.split(c).alter(codes, c * 4, 4, 1, 64);
+        }
+        double rate = (double)flipped(codes) / ((long)WORDS * 64);
+        check(Math.abs(rate - channel.getLine()) < 0.03 * channel.getLine(),
+                "split channels : " + rate + " instead of " + channel.getLine());
+    }
+
+    /**
+     * Check the part of the bits flipped in words of 64 bits which were at 0,
+     * and the part of the bits flipped after a flipped bit.
+     */
+    static void checkRate(long[] codes, double line, boolean bursty, String message) {
+        long bits = (long)codes.length * 64;
+        long flipped = flipped(codes);
+        double rate = (double)flipped / bits;
+        check(Math.abs(rate - line) < 0.03 * line, message + " : " + rate + " flipped");
+
+        // Pairs of consecutive bits flipped, over the words.
+        long pairs = 0;
+        for (int i = 0; i < codes.length; i++) {
+            long next = i + 1 < codes.length ? codes[i + 1] & 1 : 0;
+            pairs += Long.bitCount(codes[i] & (codes[i] >>> 1 | next << 63));
+        }
+        double after = (double)pairs / flipped;
+        if (bursty) {
+            check(after > 3 * line, message + " : " + after + " flipped after a flipped bit");
+        }
+        else {
+            check(Math.abs(after - line) < 0.1 * line, message + " : " + after + " flipped after a flipped bit");
+        }
+    }
+
+    /**
+     * Number of bits at 1.
+     */
+    static long flipped(long[] codes) {
+        long bits = 0;
+        for (long code : codes) {
+            bits += Long.bitCount(code);
+        }
+        return bits;
+    }
+
+    /**
+     * Fail the test if the condition is false.
+     */
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
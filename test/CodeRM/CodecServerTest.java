@@ -0,0 +1,176 @@
+package CodeRM;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests of 'CodecServer' : several clients at the same time get the same words as
+ * 'ReedMuller.unalterBatch', their requests corrected together by the workers are
+ * given back in order, an invalid request gets an ERROR, and closing the server
+ * with requests waiting ends all the connections.
+ *
+ * Run (see 'Utilities.PGMReaderTest') :
+ *
+ *      java -cp out CodeRM.CodecServerTest
+ */
+public class CodecServerTest {
+
+    public static void main(String[] args) throws Exception {
+        for (int r : new int[] {0, 2, 3, 6, 7, 10}) {
+            testClients(r, 2, 6, 30, 64);
+        }
+        // One worker : the requests wait while a batch is corrected, and are corrected together.
+        testClients(5, 1, 8, 50, 16);
+        // Requests around the size of a batch : some of them don't fit in the batch of the others.
+        testClients(4, 1, 4, 10, new ReedMuller(4).chunkSize(CodecServer.BATCH_WORDS) + 100);
+        testError();
+        testClose();
+        System.out.println("CodecServerTest : OK");
+    }
+
+    /**
+     * Several clients send DECODE, UNALTER and ENCODE requests at the same time,
+     * with between 0 and 'maxCount' words each.
+     */
+    static void testClients(final int r, int workers, int clients, final int requests, final int maxCount) throws Exception {
+        final ReedMuller rm = new ReedMuller(r);
+        final CodecServer server = new CodecServer(rm, 0, workers);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[clients];
+        for (int t = 0; t < clients; t++) {
+            final int index = t;
+            threads[t] = new Thread(() -> {
+                Random random = new Random(index);
+                try (CodecClient client = new CodecClient(server.getPort())) {
+                    check(client.getRang() == r, "rang of the server : " + client.getRang());
+                    for (int i = 0; i < requests; i++) {
+                        int count = random.nextInt(maxCount + 1);
+                        long[] codes = ReedMullerTest.altered(rm, count, index * 1000 + i);
+                        int[] expected = rm.unalterBatch(codes);
+                        String request = "client " + index + ", request " + i + ", r = " + r;
+                        check(Arrays.equals(client.decode(codes), expected), "DECODE, " + request);
+                        check(Arrays.equals(client.unalter(codes), rm.encode(expected)), "UNALTER, " + request);
+                        check(Arrays.equals(client.encode(expected), rm.encode(expected)), "ENCODE, " + request);
+                    }
+                }
+                catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        server.close();
+        if (failure.get() != null) {
+            throw new AssertionError("r = " + r + ", " + clients + " clients", failure.get());
+        }
+    }
+
+    /**
+     * An unknown operation or an invalid number of words gets an ERROR with a message,
+     * then the connection is closed. The server still answers the other connections.
+     */
+    static void testError() throws IOException {
+        ReedMuller rm = new ReedMuller(3);
+        CodecServer server = new CodecServer(rm, 0, 1);
+        try {
+            checkError(server, 99, 0, "Unknown operation");
+            checkError(server, CodecServer.DECODE, -1, "Invalid number of words");
+            checkError(server, CodecServer.UNALTER, CodecServer.MAX_COUNT + 1, "Invalid number of words");
+            try (CodecClient client = new CodecClient(server.getPort())) {
+                long[] codes = ReedMullerTest.altered(rm, 10, 3);
+                check(Arrays.equals(client.decode(codes), rm.unalterBatch(codes)), "DECODE after an ERROR");
+            }
+        }
+        finally {
+            server.close();
+        }
+    }
+
+    /**
+     * Send a request, check the ERROR and its message, and that the connection is closed.
+     */
+    static void checkError(CodecServer server, int operation, int count, String message) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            out.writeByte(operation);
+            out.writeInt(count);
+            out.flush();
+            check(in.readByte() == CodecServer.ERROR, "no ERROR for the operation " + operation + ", count " + count);
+            String text = in.readUTF();
+            check(text.startsWith(message), "message of the ERROR : " + text);
+            check(in.read() < 0, "connection not closed after an ERROR");
+        }
+    }
+
+    /**
+     * Clients send requests without stopping while the server is closed : the requests
+     * answered are right, the others fail with an IOException, and no client waits forever.
+     */
+    static void testClose() throws Exception {
+        final ReedMuller rm = new ReedMuller(12);
+        final CodecServer server = new CodecServer(rm, 0, 1);
+        final int count = rm.chunkSize(CodecServer.BATCH_WORDS) / 2;
+        final long[] codes = ReedMullerTest.altered(rm, count, 12);
+        final int[] expected = rm.unalterBatch(codes);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final AtomicInteger answered = new AtomicInteger();
+        final AtomicInteger closed = new AtomicInteger();
+        Thread[] threads = new Thread[6];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                try (CodecClient client = new CodecClient(server.getPort())) {
+                    while (true) {
+                        check(Arrays.equals(client.decode(codes), expected), "DECODE before the close");
+                        answered.incrementAndGet();
+                    }
+                }
+                catch (IOException e) {
+                    closed.incrementAndGet();
+                }
+                catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            threads[t].start();
+        }
+        while (answered.get() < threads.length) {
+            Thread.sleep(10);
+        }
+        server.close();
+        for (Thread thread : threads) {
+            thread.join(10000);
+            check(!thread.isAlive(), "client still waiting after the close");
+        }
+        if (failure.get() != null) {
+            throw new AssertionError("close with requests waiting", failure.get());
+        }
+        check(closed.get() == threads.length, "clients ended by the close : " + closed.get());
+        try (CodecClient client = new CodecClient(server.getPort())) {
+            client.decode(codes);
+            throw new AssertionError("request answered after the close");
+        }
+        catch (IOException e) {
+            // Expected.
+        }
+    }
+
+    /**
+     * Fail the test if the condition is false.
+     */
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package CodeRM;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests of 'DecodeCache' : a word found in the cache is always the right one,
+ * and a code with a cache corrects the words as without cache.
+ *
+ * Run (see 'Utilities.PGMReaderTest') :
+ *
+ *      java -cp out CodeRM.DecodeCacheTest
+ */
+public class DecodeCacheTest {
+
+    public static void main(String[] args) throws InterruptedException {
+        testGetPut();
+        testBounded();
+        for (int r = 0; r <= 6; r++) {
+            testSameWords(r);
+        }
+        testThreads();
+        System.out.println("DecodeCacheTest : OK");
+    }
+
+    /**
+     * A word put is found, a word never put is not, the hits and misses are counted.
+     */
+    static void testGetPut() {
+        for (int r : new int[] {3, 6}) {
+            DecodeCache cache = new DecodeCache(r, 1024);
+            check(cache.get(5) == -1, "empty cache, r = " + r);
+            cache.put(5, 9);
+            check(cache.get(5) == 9, "word put, r = " + r);
+            check(cache.getHits() == 1 && cache.getMisses() == 1, "hits and misses, r = " + r);
+            check(cache.getHitRate() == 0.5, "hit rate, r = " + r);
+        }
+    }
+
+    /**
+     * With more words than its capacity, the cache forgets words but never gives a wrong one.
+     */
+    static void testBounded() {
+        DecodeCache cache = new DecodeCache(6, 256);
+        Random random = new Random(1);
+        long[] codes = new long[20000];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = random.nextLong();
+            cache.put(codes[i], i & 0x7f);
+        }
+        int found = 0;
+        for (int i = 0; i < codes.length; i++) {
+            int message = cache.get(codes[i]);
+            check(message == -1 || message == (i & 0x7f), "wrong word in the cache : " + i);
+            if (message != -1) {
+                found++;
+            }
+        }
+        check(found > 0 && found <= 2 * 256, "number of words kept : " + found);
+    }
+
+    /**
+     * The corrections with a cache are the same as without cache, on words repeated as in an image.
+     */
+    static void testSameWords(int r) {
+        ReedMuller plain = new ReedMuller(r);
+        ReedMuller cached = new ReedMuller(r);
+        DecodeCache cache = cached.enableCache(1 << 12);
+        long[] codes = ReedMullerTest.altered(plain, 2000, r);
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < codes.length; i++) {
+                check(cached.unalterWord(codes[i]) == plain.unalterWord(codes[i]), "unalterWord, word " + i + ", r = " + r);
+                check(cached.unalterDecodeWord(codes[i]) == plain.unalterDecodeWord(codes[i]), "unalterDecodeWord, word " + i + ", r = " + r);
+            }
+        }
+        check(cache.getHits() > 0, "no hit, r = " + r);
+    }
+
+    /**
+     * Several threads sharing a code with a cache get the same corrections as without cache.
+     */
+    static void testThreads() throws InterruptedException {
+        final ReedMuller plain = new ReedMuller(6);
+        final ReedMuller cached = new ReedMuller(6);
+        cached.enableCache(512);
+        final long[] codes = ReedMullerTest.altered(plain, 5000, 6);
+        final AtomicInteger errors = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int start = t * 1000;
+            threads[t] = new Thread(() -> {
+                for (int pass = 0; pass < 3; pass++) {
+                    for (int i = 0; i < codes.length; i++) {
+                        long code = codes[(start + i) % codes.length];
+                        if (cached.unalterDecodeWord(code) != plain.unalterDecodeWord(code)) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        check(errors.get() == 0, "wrong corrections with several threads : " + errors.get());
+    }
+
+    /**
+     * Fail the test if the condition is false.
+     */
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
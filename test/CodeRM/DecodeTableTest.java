@@ -0,0 +1,102 @@
+package CodeRM;
+
+import java.util.Random;
+
+/**
+ * Tests of 'DecodeTable' : the tables give the same words as the Hadamard transform,
+ * the same word too when several are at the same distance.
+ *
+ * Run (see 'Utilities.PGMReaderTest') :
+ *
+ *      java -cp out CodeRM.DecodeTableTest
+ */
+public class DecodeTableTest {
+
+    public static void main(String[] args) {
+        for (int r = 1; r <= 4; r++) {
+            testAllWords(r);
+        }
+        testRandomWords(5, 1 << 20);
+        testTies(5);
+        for (int r = 1; r <= DecodeTable.MAX_RANG; r++) {
+            testCode(r);
+        }
+        System.out.println("DecodeTableTest : OK");
+    }
+
+    /**
+     * All the received words of 2^r bits (r <= 4).
+     */
+    static void testAllWords(int r) {
+        DecodeTable table = DecodeTable.get(r);
+        ReedMuller rm = new ReedMuller(r);
+        long count = 1L << (1 << r);
+        for (long code = 0; code < count; code++) {
+            check(table.decode(code) == rm.decodeWord(rm.unalterWord(code)), "word " + code + ", r = " + r);
+        }
+    }
+
+    /**
+     * Random received words.
+     */
+    static void testRandomWords(int r, int count) {
+        DecodeTable table = DecodeTable.get(r);
+        ReedMuller rm = new ReedMuller(r);
+        Random random = new Random(r);
+        long mask = (1L << (1 << r)) - 1;
+        for (int i = 0; i < count; i++) {
+            long code = random.nextLong() & mask;
+            check(table.decode(code) == rm.decodeWord(rm.unalterWord(code)), "word " + code + ", r = " + r);
+        }
+    }
+
+    /**
+     * Received words at the same distance of two encoded words : an encoded word with
+     * 2^(r-2) bits flipped where it differs from another one.
+     */
+    static void testTies(int r) {
+        DecodeTable table = DecodeTable.get(r);
+        ReedMuller rm = new ReedMuller(r);
+        Random random = new Random(r + 1);
+        int quarter = 1 << (r - 2);
+        for (int t = 0; t < 100000; t++) {
+            int a = random.nextInt(2 << r);
+            int b = random.nextInt(2 << r);
+            long diff = rm.encodeWord(a) ^ rm.encodeWord(b);
+            if (Long.bitCount(diff) != 2 * quarter) {
+                continue;
+            }
+            long code = rm.encodeWord(a);
+            for (int n = 0; n < quarter; n++) {
+                long bit = Long.lowestOneBit(diff);
+                code ^= bit;
+                diff ^= bit;
+            }
+            check(table.decode(code) == rm.decodeWord(rm.unalterWord(code)), "tie " + code + ", r = " + r);
+        }
+    }
+
+    /**
+     * A code decoding with the tables gives the same words as a code with the transform.
+     */
+    static void testCode(int r) {
+        ReedMuller transform = new ReedMuller(r, ReedMuller.Decoding.TRANSFORM);
+        ReedMuller table = new ReedMuller(r, ReedMuller.Decoding.TABLE);
+        long[] codes = ReedMullerTest.altered(transform, 5000, r);
+        int[] expected = transform.unalterBatch(codes);
+        int[] messages = table.unalterBatch(codes);
+        for (int i = 0; i < codes.length; i++) {
+            check(messages[i] == expected[i], "unalterBatch, word " + i + ", r = " + r);
+            check(table.unalterWord(codes[i]) == transform.unalterWord(codes[i]), "unalterWord, word " + i + ", r = " + r);
+        }
+    }
+
+    /**
+     * Fail the test if the condition is false.
+     */
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package CodeRM;
+
+import java.util.Arrays;
+
+/**
+ * Tests of 'Interleaver' : 'deinterleave' gives back the words given to 'interleave',
+ * with a short last block too, the bits are sent column by column, and a burst of
+ * 'depth' * (2^(r-2) - 1) flipped bits in a block is corrected.
+ *
+ * Run (see 'Utilities.PGMReaderTest') :
+ *
+ *      java -cp out CodeRM.InterleaverTest
+ */
+public class InterleaverTest {
+
+    public static void main(String[] args) {
+        for (int r = 0; r <= 10; r++) {
+            for (int depth : new int[] {1, 2, 3, 16, 64}) {
+                // No word, one word, a short block only, full blocks and a short last block.
+                for (int count : new int[] {0, 1, depth - 1, 4 * depth, 5 * depth + 3}) {
+                    testRoundTrip(r, depth, count);
+                }
+            }
+        }
+        testLayout();
+        for (int r = 3; r <= 8; r++) {
+            testBurst(r, 8);
+        }
+        System.out.println("InterleaverTest : OK");
+    }
+
+    /**
+     * Deinterleave the interleaved words, which have the same number of bits at 1.
+     */
+    static void testRoundTrip(int r, int depth, int count) {
+        ReedMuller rm = new ReedMuller(r);
+        Interleaver interleaver = new Interleaver(rm, depth);
+        long[] codes = ReedMullerTest.altered(rm, count, r * 1000 + depth + count);
+        long[] interleaved = interleaver.interleave(codes);
+        String test = "r = " + r + ", depth = " + depth + ", count = " + count;
+        check(Arrays.equals(interleaver.deinterleave(interleaved), codes), "round trip, " + test);
+        check(bits(interleaved) == bits(codes), "bits at 1, " + test);
+        if (depth == 1) {
+            check(Arrays.equals(interleaved, codes), "depth 1 is not the identity, " + test);
+        }
+    }
+
+    /**
+     * The bit i of the word d of a block is the bit p = i * depth + d of the block :
+     * with 2 bits per word (r = 1) and 2 words, the first word sent has the bits 0 of the
+     * two words, the second one their bits 1. A short last block of 1 word is kept as it is.
+     */
+    static void testLayout() {
+        Interleaver interleaver = new Interleaver(new ReedMuller(1), 2);
+        check(Arrays.equals(interleaver.interleave(new long[] {1, 0, 2}), new long[] {1, 0, 2}), "bit 0 of the word 0");
+        check(Arrays.equals(interleaver.interleave(new long[] {2, 0, 1}), new long[] {0, 1, 1}), "bit 1 of the word 0");
+        check(Arrays.equals(interleaver.interleave(new long[] {0, 1, 0}), new long[] {2, 0, 0}), "bit 0 of the word 1");
+        check(Arrays.equals(interleaver.interleave(new long[] {0, 2, 0}), new long[] {0, 2, 0}), "bit 1 of the word 1");
+    }
+
+    /**
+     * A burst of 'depth' * (2^(r-2) - 1) consecutive flipped bits in each full block
+     * gives at most 2^(r-2) - 1 flipped bits per word : all the words are corrected.
+     */
+    static void testBurst(int r, int depth) {
+        ReedMuller rm = new ReedMuller(r);
+        Interleaver interleaver = new Interleaver(rm, depth);
+        int words = rm.getWords();
+        int length = rm.getLength();
+        int count = 10 * depth;
+        int[] messages = new int[count];
+        for (int i = 0; i < count; i++) {
+            messages[i] = (i * 37) & ((2 << r) - 1);
+        }
+        long[] codes = interleaver.interleave(rm.encode(messages));
+        int burst = depth * ((1 << (r - 2)) - 1);
+        for (int block = 0; block < count / depth; block++) {
+            // The burst starts somewhere in the block and ends before its end.
+            long start = (long)block * depth * length + (block * 13) % (depth * length - burst + 1);
+            for (long p = start; p < start + burst; p++) {
+                codes[(int)(p / length) * words + (int)((p % length) >>> 6)] ^= 1L << ((p % length) & 63);
+            }
+        }
+        check(Arrays.equals(rm.unalterBatch(interleaver.deinterleave(codes)), messages), "burst not corrected, r = " + r);
+    }
+
+    /**
+     * Number of bits at 1.
+     */
+    static long bits(long[] codes) {
+        long bits = 0;
+        for (long code : codes) {
+            bits += Long.bitCount(code);
+        }
+        return bits;
+    }
+
+    /**
+     * Fail the test if the condition is false.
+     */
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package CodeRM;
+
+import java.util.Random;
+
+/**
+ * Tests of 'ReedMullerRecursive' : the Plotkin encoding gives the code RM(m, r) of the definition,
+ * and the decoding finds the sent word.
+ *
+ * RM(m, r) is the set of the words of 2^r bits whose bit i is the value at the point i of a
+ * polynomial of degree m or less in r variables (the bits of i). The test checks it directly :
+ * the polynomial of an encoded word (Moebius transform of its bits) has no monomial of degree
+ * more than m, and the encoded words of the k words of one bit are independent, so the 2^k
+ * encoded words are all the words of RM(m, r).
+ *
+ * Run (see 'Utilities.PGMReaderTest') :
+ *
+ *      java -cp out CodeRM.ReedMullerRecursiveTest
+ */
+public class ReedMullerRecursiveTest {
+
+    public static void main(String[] args) {
+        for (int r = 0; r <= 9; r++) {
+            for (int m = 0; m <= r; m++) {
+                ReedMullerRecursive code = new ReedMullerRecursive(m, r);
+                testDegree(code);
+                testRank(code);
+                testLinear(code);
+                testDecode(code);
+            }
+            if (r >= 1) {
+                testFirstOrder(r);
+            }
+        }
+        System.out.println("ReedMullerRecursiveTest : OK");
+    }
+
+    /**
+     * The encoded words are values of polynomials of degree m or less.
+     */
+    static void testDegree(ReedMullerRecursive code) {
+        Random random = new Random(code.getRang() * 31 + code.getOrder());
+        long[] word = new long[code.getMessageWords()];
+        long[] encoded = new long[code.getWords()];
+        for (int t = 0; t < 50; t++) {
+            randomWord(random, word, code.getDimension());
+            code.encode(word, encoded);
+            check(degree(encoded, code.getRang()) <= code.getOrder(), "degree, " + name(code));
+        }
+    }
+
+    /**
+     * The encoded words of the words of one bit are independent (rank k).
+     */
+    static void testRank(ReedMullerRecursive code) {
+        int k = code.getDimension();
+        int words = code.getWords();
+        long[][] rows = new long[k][words];
+        long[] word = new long[code.getMessageWords()];
+        for (int i = 0; i < k; i++) {
+            word[i >>> 6] = 1L << (i & 63);
+            code.encode(word, rows[i]);
+            word[i >>> 6] = 0;
+        }
+        check(rank(rows, code.getLength()) == k, "rank, " + name(code));
+    }
+
+    /**
+     * The encoding is linear : encode(a ^ b) = encode(a) ^ encode(b).
+     */
+    static void testLinear(ReedMullerRecursive code) {
+        Random random = new Random(code.getRang() * 37 + code.getOrder());
+        long[] a = new long[code.getMessageWords()];
+        long[] b = new long[a.length];
+        long[] sum = new long[a.length];
+        long[] ca = new long[code.getWords()];
+        long[] cb = new long[ca.length];
+        long[] cs = new long[ca.length];
+        for (int t = 0; t < 20; t++) {
+            randomWord(random, a, code.getDimension());
+            randomWord(random, b, code.getDimension());
+            for (int i = 0; i < a.length; i++) {
+                sum[i] = a[i] ^ b[i];
+            }
+            code.encode(a, ca);
+            code.encode(b, cb);
+            code.encode(sum, cs);
+            for (int i = 0; i < ca.length; i++) {
+                check(cs[i] == (ca[i] ^ cb[i]), "linearity, " + name(code));
+            }
+        }
+    }
+
+    /**
+     * A word is decoded back, without error and with one error if the distance is at least 4.
+     */
+    static void testDecode(ReedMullerRecursive code) {
+        Random random = new Random(code.getRang() * 41 + code.getOrder());
+        long[] word = new long[code.getMessageWords()];
+        long[] decoded = new long[word.length];
+        long[] encoded = new long[code.getWords()];
+        boolean correcting = code.getRang() - code.getOrder() >= 2;
+        for (int t = 0; t < 20; t++) {
+            randomWord(random, word, code.getDimension());
+            code.encode(word, encoded);
+            if (correcting) {
+                int bit = random.nextInt(code.getLength());
+                encoded[bit >>> 6] ^= 1L << (bit & 63);
+            }
+            code.decode(encoded, decoded);
+            for (int i = 0; i < word.length; i++) {
+                check(decoded[i] == word[i], "decode, " + name(code));
+            }
+        }
+    }
+
+    /**
+     * RM(1, r) has the same bits as 'ReedMuller'.
+     */
+    static void testFirstOrder(int r) {
+        ReedMullerRecursive code = new ReedMullerRecursive(1, r);
+        ReedMuller rm = new ReedMuller(r);
+        long[] word = new long[1];
+        long[] encoded = new long[code.getWords()];
+        long[] expected = new long[rm.getWords()];
+        for (int message = 0; message < 2 << r; message++) {
+            word[0] = message;
+            code.encode(word, encoded);
+            rm.encodeWord(message, expected);
+            for (int i = 0; i < expected.length; i++) {
+                check(encoded[i] == expected[i], "RM(1, " + r + ") and ReedMuller, word " + message);
+            }
+        }
+    }
+
+    /**
+     * Degree of the polynomial whose values are the bits of 'code' (Moebius transform).
+     */
+    static int degree(long[] code, int r) {
+        int length = 1 << r;
+        boolean[] f = new boolean[length];
+        for (int i = 0; i < length; i++) {
+            f[i] = ((code[i >>> 6] >>> (i & 63)) & 1) != 0;
+        }
+        for (int step = 1; step < length; step <<= 1) {
+            for (int i = 0; i < length; i++) {
+                if ((i & step) != 0) {
+                    f[i] ^= f[i ^ step];
+                }
+            }
+        }
+        int degree = -1;
+        for (int i = 0; i < length; i++) {
+            if (f[i]) {
+                degree = Math.max(degree, Integer.bitCount(i));
+            }
+        }
+        return degree;
+    }
+
+    /**
+     * Rank of the rows of 'length' bits over GF(2) (the rows are modified).
+     */
+    static int rank(long[][] rows, int length) {
+        int rank = 0;
+        for (int bit = 0; bit < length && rank < rows.length; bit++) {
+            int word = bit >>> 6;
+            long mask = 1L << (bit & 63);
+            int pivot = rank;
+            while (pivot < rows.length && (rows[pivot][word] & mask) == 0) {
+                pivot++;
+            }
+            if (pivot == rows.length) {
+                continue;
+            }
+            long[] row = rows[pivot];
+            rows[pivot] = rows[rank];
+            rows[rank] = row;
+            for (int i = 0; i < rows.length; i++) {
+                if (i != rank && (rows[i][word] & mask) != 0) {
+                    for (int k = 0; k < row.length; k++) {
+                        rows[i][k] ^= row[k];
+                    }
+                }
+            }
+            rank++;
+        }
+        return rank;
+    }
+
+    /**
+     * Random word of 'bits' bits.
+     */
+    static void randomWord(Random random, long[] word, int bits) {
+        for (int i = 0; i < word.length; i++) {
+            int n = Math.min(64, bits - (i << 6));
+            word[i] = n == 64 ? random.nextLong() : random.nextLong() & ((1L << n) - 1);
+        }
+    }
+
+    static String name(ReedMullerRecursive code) {
+        return "RM(" + code.getOrder() + ", " + code.getRang() + ")";
+    }
+
+    /**
+     * Fail the test if the condition is false.
+     */
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
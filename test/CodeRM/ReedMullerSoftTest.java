@@ -0,0 +1,158 @@
+package CodeRM;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests of 'ReedMuller.unalterSoft' : with values +1/-1 the words are the same as with
+ * the hard decision, the float and short values give the same words, and the reliability
+ * is half the difference between the two best correlations with the encoded words.
+ *
+ * Run (see 'Utilities.PGMReaderTest') :
+ *
+ *      java -cp out CodeRM.ReedMullerSoftTest
+ */
+public class ReedMullerSoftTest {
+
+    public static void main(String[] args) {
+        for (int r = 0; r <= 12; r++) {
+            testHard(r, r <= 8 ? 1000 : 100);
+            testShort(r, r <= 8 ? 1000 : 100);
+        }
+        for (int r = 0; r <= 7; r++) {
+            testReliability(r, r <= 5 ? 1000 : 200);
+        }
+        testImage(4, 500);
+        System.out.println("ReedMullerSoftTest : OK");
+    }
+
+    /**
+     * With values +1/-1 (or any same confidence for all the bits),
+     * the words are the same as 'decode(unalterWord(code))', the ties too.
+     */
+    static void testHard(int r, int count) {
+        ReedMuller rm = new ReedMuller(r);
+        int words = rm.getWords();
+        int length = rm.getLength();
+        long[] codes = ReedMullerTest.altered(rm, count, r);
+        int[] expected = rm.unalterBatch(codes);
+        float[] values = new float[length];
+        short[] integers = new short[length];
+        for (float scale : new float[] {1, 0.5f, 3}) {
+            for (int i = 0; i < count; i++) {
+                for (int bit = 0; bit < length; bit++) {
+                    boolean one = (codes[i * words + (bit >>> 6)] >>> (bit & 63) & 1) != 0;
+                    values[bit] = one ? -scale : scale;
+                    integers[bit] = (short)(one ? -1 : 1);
+                }
+                String word = "word " + i + ", r = " + r + ", scale = " + scale;
+                check(rm.unalterSoft(values, 0, null, 0) == expected[i], "float values, " + word);
+                check(rm.unalterSoft(integers, 0) == expected[i], "short values, " + word);
+            }
+        }
+    }
+
+    /**
+     * The float and the short values give the same words, on random integer values
+     * (exact in a float) and at an offset in the array.
+     */
+    static void testShort(int r, int count) {
+        ReedMuller rm = new ReedMuller(r);
+        int length = rm.getLength();
+        Random random = new Random(r + 100);
+        int offset = 5;
+        float[] values = new float[offset + length];
+        short[] integers = new short[offset + length];
+        for (int i = 0; i < count; i++) {
+            // Small values for many ties, larger ones for few.
+            int range = i % 2 == 0 ? 3 : 200;
+            for (int bit = 0; bit < length; bit++) {
+                int value = random.nextInt(2 * range + 1) - range;
+                values[offset + bit] = value;
+                integers[offset + bit] = (short)value;
+            }
+            check(rm.unalterSoft(values, offset, null, 0) == rm.unalterSoft(integers, offset),
+                    "float and short values, word " + i + ", r = " + r);
+        }
+    }
+
+    /**
+     * The decoded word has the best correlation with the values, and the reliability is half
+     * the difference between the two best correlations, computed on all the encoded words.
+     */
+    static void testReliability(int r, int count) {
+        ReedMuller rm = new ReedMuller(r);
+        int length = rm.getLength();
+        int messages = 2 << r;
+        long[][] encoded = new long[messages][rm.getWords()];
+        for (int m = 0; m < messages; m++) {
+            rm.encodeWord(m, encoded[m]);
+        }
+        Random random = new Random(r + 200);
+        float[] values = new float[length];
+        float[] reliability = new float[3];
+        for (int i = 0; i < count; i++) {
+            for (int bit = 0; bit < length; bit++) {
+                values[bit] = (float)random.nextGaussian() + (i % 3 == 0 ? 0 : 1);
+            }
+            int message = rm.unalterSoft(values, 0, reliability, 2);
+
+            double best = Double.NEGATIVE_INFINITY;
+            double second = Double.NEGATIVE_INFINITY;
+            double chosen = 0;
+            for (int m = 0; m < messages; m++) {
+                double correlation = 0;
+                for (int bit = 0; bit < length; bit++) {
+                    boolean one = (encoded[m][bit >>> 6] >>> (bit & 63) & 1) != 0;
+                    correlation += one ? -values[bit] : values[bit];
+                }
+                if (correlation > best) {
+                    second = best;
+                    best = correlation;
+                }
+                else if (correlation > second) {
+                    second = correlation;
+                }
+                if (m == message) {
+                    chosen = correlation;
+                }
+            }
+            double tolerance = 1e-4 * length;
+            String word = "word " + i + ", r = " + r;
+            check(Math.abs(chosen - best) <= tolerance, "not the best correlation, " + word + " : " + chosen + " < " + best);
+            check(Math.abs(reliability[2] - (best - second) / 2) <= tolerance,
+                    "reliability, " + word + " : " + reliability[2] + " instead of " + (best - second) / 2);
+        }
+    }
+
+    /**
+     * An image gives the same words and reliabilities as the words one by one.
+     */
+    static void testImage(int r, int count) {
+        ReedMuller rm = new ReedMuller(r);
+        int length = rm.getLength();
+        Random random = new Random(r + 300);
+        float[] values = new float[count * length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (float)random.nextGaussian() + 0.5f;
+        }
+        float[] reliability = new float[count];
+        int[] image = rm.unalterSoft(values, reliability);
+        check(image.length == count, "number of words : " + image.length);
+        check(Arrays.equals(rm.unalterSoft(values, null), image), "image without reliability");
+        float[] one = new float[1];
+        for (int i = 0; i < count; i++) {
+            check(rm.unalterSoft(values, i * length, one, 0) == image[i], "image, word " + i);
+            check(one[0] == reliability[i], "image, reliability of the word " + i);
+        }
+    }
+
+    /**
+     * Fail the test if the condition is false.
+     */
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
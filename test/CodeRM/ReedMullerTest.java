@@ -0,0 +1,149 @@
+package CodeRM;
+
+import Utilities.PGMReader;
+import Utilities.PGMWriter;
+import Utilities.ParsePGM;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests of 'ReedMuller' : the different ways to unalter and decode give the same words.
+ *
+ * Run (see 'Utilities.PGMReaderTest') :
+ *
+ *      java -cp out CodeRM.ReedMullerTest
+ */
+public class ReedMullerTest {
+
+    public static void main(String[] args) throws IOException {
+        for (int r = 0; r <= 14; r++) {
+            testBatch(r, r <= 10 ? 1000 : 100);
+            testFused(r, r <= 10 ? 300 : 30);
+        }
+        System.out.println("ReedMullerTest : OK");
+    }
+
+    /**
+     * 'unalterBatch' gives the same words as 'unalterWord' then 'decodeWord',
+     * for a count which is not a multiple of the size of a block and a word not at the start of the array.
+     */
+    static void testBatch(int r, int count) {
+        ReedMuller rm = new ReedMuller(r);
+        int words = rm.getWords();
+        long[] codes = altered(rm, count, r);
+
+        int[] expected = new int[count];
+        long[] code = new long[words];
+        for (int i = 0; i < count; i++) {
+            if (words == 1) {
+                expected[i] = rm.decodeWord(rm.unalterWord(codes[i]));
+            }
+            else {
+                System.arraycopy(codes, i * words, code, 0, words);
+                rm.unalterWord(code, code);
+                expected[i] = rm.decodeWord(code);
+            }
+        }
+
+        int[] messages = rm.unalterBatch(codes);
+        for (int i = 0; i < count; i++) {
+            check(messages[i] == expected[i], "unalterBatch, word " + i + ", r = " + r);
+        }
+
+        int first = 3;
+        int[] part = new int[count];
+        rm.unalterBatch(codes, first * words, part, 1, count - first - 1);
+        for (int i = 0; i < count - first - 1; i++) {
+            check(part[1 + i] == expected[first + i], "unalterBatch with offsets, word " + i + ", r = " + r);
+        }
+    }
+
+    /**
+     * The fused operations give the same words as 'unalter' then 'decode' :
+     * on a long, in a 'long[]', on a BigInteger, on an image in a String and in a pipeline.
+     */
+    static void testFused(int r, int count) throws IOException {
+        ReedMuller rm = new ReedMuller(r);
+        int words = rm.getWords();
+        long[] codes = altered(rm, count, r + 1000);
+        long[] code = new long[words];
+        long[] unaltered = new long[words];
+        StringBuilder image = new StringBuilder(ParsePGM.header(count, 1, 255));
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(codes, i * words, code, 0, words);
+            rm.unalterWord(code, unaltered);
+            int expected = rm.decodeWord(unaltered);
+            check(rm.unalterDecodeWord(code) == expected, "unalterDecodeWord(long[]), word " + i + ", r = " + r);
+            if (words == 1) {
+                check(rm.unalterDecodeWord(codes[i]) == expected, "unalterDecodeWord(long), word " + i + ", r = " + r);
+            }
+            BigInteger big = toBigInteger(code);
+            check(rm.unalterDecode(big).equals(rm.decode(rm.unalter(big))), "unalterDecode(BigInteger), word " + i + ", r = " + r);
+            image.append(big).append(' ');
+        }
+        String text = image.toString();
+        check(rm.unalterDecode(text).equals(rm.decode(rm.unalter(text))), "unalterDecode(String), r = " + r);
+
+        byte[] fused = run(new Pipeline(Pipeline.unalterDecode(rm)), text);
+        byte[] separate = run(new Pipeline(Pipeline.unalter(rm), Pipeline.decode(rm)), text);
+        check(Arrays.equals(fused, separate), "pipeline, r = " + r);
+    }
+
+    /**
+     * Run a pipeline on an image in a String.
+     */
+    static byte[] run(Pipeline pipeline, String image) throws IOException {
+        PGMReader reader = new PGMReader(new ByteArrayInputStream(image.getBytes("ISO-8859-1")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PGMWriter writer = new PGMWriter(out, reader.getHeader());
+        pipeline.run(reader, writer);
+        writer.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * Unsigned value of a word stored in a 'long[]'.
+     */
+    static BigInteger toBigInteger(long[] code) {
+        BigInteger value = BigInteger.ZERO;
+        for (int k = code.length - 1; k >= 0; k--) {
+            value = value.shiftLeft(64).or(new BigInteger(Long.toUnsignedString(code[k])));
+        }
+        return value;
+    }
+
+    /**
+     * Random encoded words with about 1 bit in 8 flipped (some of them can't be corrected).
+     */
+    static long[] altered(ReedMuller rm, int count, long seed) {
+        Random random = new Random(seed);
+        int words = rm.getWords();
+        int length = rm.getLength();
+        long[] codes = new long[count * words];
+        long[] code = new long[words];
+        for (int i = 0; i < count; i++) {
+            rm.encodeWord(random.nextInt(2 << rm.getRang()), code);
+            for (int bit = 0; bit < length; bit++) {
+                if (random.nextInt(8) == 0) {
+                    code[bit >>> 6] ^= 1L << (bit & 63);
+                }
+            }
+            System.arraycopy(code, 0, codes, i * words, words);
+        }
+        return codes;
+    }
+
+    /**
+     * Fail the test if the condition is false.
+     */
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
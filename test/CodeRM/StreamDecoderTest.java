@@ -0,0 +1,168 @@
+package CodeRM;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests of 'StreamDecoder' : the decoded stream has the words of 'ReedMuller.unalterBatch'
+ * in the order of the input, with one or several threads, small chunks and an input read
+ * a few bytes at a time. A stream ending in the middle of a word is an error, and if
+ * r < 3 the words sharing a byte are read from its lowest bits.
+ *
+ * Run (see 'Utilities.PGMReaderTest') :
+ *
+ *      java -cp out CodeRM.StreamDecoderTest
+ */
+public class StreamDecoderTest {
+
+    public static void main(String[] args) throws IOException {
+        for (int r = 0; r <= 10; r++) {
+            int count = r <= 7 ? 2000 : 300;
+            for (int threads : new int[] {1, 3}) {
+                for (int chunkWords : new int[] {1, 7, 64, StreamDecoder.CHUNK_WORDS}) {
+                    testStream(r, count, chunkWords, threads, 2);
+                }
+            }
+            // Counts which don't fill the last chunk, or the last byte if r < 3.
+            testStream(r, 13, 5, 2, 3);
+            testStream(r, 1, 4, 2, 1);
+            testStream(r, 0, 4, 2, 1);
+        }
+        testTruncated();
+        testBytes();
+        System.out.println("StreamDecoderTest : OK");
+    }
+
+    /**
+     * Decode a stream of altered words, read a few bytes at a time.
+     */
+    static void testStream(int r, int count, int chunkWords, int threads, int depth) throws IOException {
+        ReedMuller rm = new ReedMuller(r);
+        int length = rm.getLength();
+        // If r < 3, the unused bits of the last byte are words too (here at 0).
+        int padded = (int)((((long)count * length + 7) >>> 3 << 3) >>> r);
+        long[] codes = Arrays.copyOf(ReedMullerTest.altered(rm, count, r * 100 + chunkWords), padded * rm.getWords());
+        int[] expected = rm.unalterBatch(codes);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StreamDecoder decoder = new StreamDecoder(rm, chunkWords, threads, depth);
+        long decoded = decoder.decode(new SlowInput(stream(rm, codes, padded), r), out);
+        String test = "r = " + r + ", count = " + count + ", chunk = " + chunkWords + ", threads = " + threads;
+        check(decoded == padded, "number of words, " + test + " : " + decoded);
+        check(Arrays.equals(messages(out.toByteArray(), r), expected), "decoded words, " + test);
+    }
+
+    /**
+     * A stream ending in the middle of a word (r >= 4) is an error, at the end of
+     * the first chunk and after other chunks.
+     */
+    static void testTruncated() throws IOException {
+        for (int r = 4; r <= 8; r++) {
+            ReedMuller rm = new ReedMuller(r);
+            long[] codes = ReedMullerTest.altered(rm, 20, r);
+            byte[] stream = stream(rm, codes, 20);
+            for (int words : new int[] {0, 3, 19}) {
+                byte[] truncated = Arrays.copyOf(stream, words * (rm.getLength() >>> 3) + 1);
+                for (int threads : new int[] {1, 2}) {
+                    try {
+                        new StreamDecoder(rm, 4, threads, 2).decode(new ByteArrayInputStream(truncated), new ByteArrayOutputStream());
+                        throw new AssertionError("truncated stream decoded, r = " + r + ", words = " + words);
+                    }
+                    catch (IOException e) {
+                        check(e.getMessage().contains("middle of an encoded word"), "error : " + e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * If r < 3, the words sharing a byte are read from its lowest bits :
+     * with r = 1, the byte 11 10 01 00 has the words 00, 01, 10, 11 (in this order).
+     */
+    static void testBytes() throws IOException {
+        ReedMuller rm = new ReedMuller(1);
+        byte[] stream = {(byte)0xe4, (byte)0x1b};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        check(new StreamDecoder(rm, 1, 2, 2).decode(new ByteArrayInputStream(stream), out) == 8, "number of words, r = 1");
+        int[] expected = new int[8];
+        for (int i = 0; i < 4; i++) {
+            expected[i] = rm.decodeWord(rm.unalterWord((long)i));
+            expected[7 - i] = expected[i];
+        }
+        check(Arrays.equals(messages(out.toByteArray(), 1), expected), "words of a byte, r = 1");
+
+        // r = 0 : each bit is a word.
+        rm = new ReedMuller(0);
+        out.reset();
+        new StreamDecoder(rm, 3, 1, 1).decode(new ByteArrayInputStream(new byte[] {(byte)0x35}), out);
+        check(Arrays.equals(out.toByteArray(), new byte[] {1, 0, 1, 0, 1, 1, 0, 0}), "bits of a byte, r = 0");
+    }
+
+    /**
+     * The stream of encoded words : bit i of the word j is the bit (j * 2^r + i), bit 0 is
+     * the lowest bit of the first byte.
+     */
+    static byte[] stream(ReedMuller rm, long[] codes, int count) {
+        int length = rm.getLength();
+        int words = rm.getWords();
+        byte[] stream = new byte[(int)(((long)count * length + 7) >>> 3)];
+        for (int j = 0; j < count; j++) {
+            for (int i = 0; i < length; i++) {
+                if ((codes[j * words + (i >>> 6)] >>> (i & 63) & 1) != 0) {
+                    long position = (long)j * length + i;
+                    stream[(int)(position >>> 3)] |= 1 << (position & 7);
+                }
+            }
+        }
+        return stream;
+    }
+
+    /**
+     * The decoded words of the output : (r + 8) / 8 bytes each, in little-endian.
+     */
+    static int[] messages(byte[] output, int r) {
+        int bytes = (r + 8) / 8;
+        int[] messages = new int[output.length / bytes];
+        for (int i = 0; i < messages.length; i++) {
+            for (int k = 0; k < bytes; k++) {
+                messages[i] |= (output[i * bytes + k] & 0xff) << (k << 3);
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * An input giving a few bytes at each read, as a pipe or a socket.
+     */
+    static class SlowInput extends InputStream {
+        private final ByteArrayInputStream in;
+        private final Random random;
+
+        SlowInput(byte[] data, long seed) {
+            this.in = new ByteArrayInputStream(data);
+            this.random = new Random(seed);
+        }
+
+        public int read() {
+            return in.read();
+        }
+
+        public int read(byte[] b, int offset, int length) {
+            return in.read(b, offset, Math.min(length, 1 + random.nextInt(300)));
+        }
+    }
+
+    /**
+     * Fail the test if the condition is false.
+     */
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
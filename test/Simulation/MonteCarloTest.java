@@ -0,0 +1,84 @@
+package Simulation;
+
+import Alteration.Alteration;
+
+/**
+ * Tests of 'MonteCarlo' : the same seed gives the same result with any number of threads,
+ * with and without target of word errors, on a channel without and with bursts.
+ *
+ * Run (see 'Utilities.PGMReaderTest') :
+ *
+ *      java -cp out Simulation.MonteCarloTest
+ */
+public class MonteCarloTest {
+
+    public static void main(String[] args) throws InterruptedException {
+        // Without target : all the words.
+        testThreads(4, 0.08, 100000, 0);
+        // Target reached after a few batches, with a lot of word errors per batch.
+        testThreads(3, 0.1, 1000000, 700);
+        // Target reached in the middle of a batch, with few word errors per batch.
+        testThreads(5, 0.06, 1000000, 50);
+        // Target never reached.
+        testThreads(6, 0.02, 50000, 1000000);
+        testBurst(5, 4, 500000, 300);
+        testBurst(5, 1, 30000, 0);
+        System.out.println("MonteCarloTest : OK");
+    }
+
+    /**
+     * Same results with 1 thread and several threads, several times (the threads run in another order).
+     */
+    static void testThreads(int r, double line, long maxWords, long targetErrors) throws InterruptedException {
+        MonteCarlo.Result expected = new MonteCarlo(1, 42).run(r, line, maxWords, targetErrors);
+        checkTarget(expected, maxWords, targetErrors);
+        for (int threads : new int[] {2, 4, 8}) {
+            for (int t = 0; t < 3; t++) {
+                MonteCarlo.Result result = new MonteCarlo(threads, 42).run(r, line, maxWords, targetErrors);
+                checkSame(result, expected, threads + " threads, r = " + r + ", target = " + targetErrors);
+            }
+        }
+    }
+
+    /**
+     * Same results with 1 thread and several threads on a burst channel with interleaving.
+     */
+    static void testBurst(int r, int depth, long maxWords, long targetErrors) throws InterruptedException {
+        Alteration channel = new Alteration(0.01, 0.4, 0.02, 0.1, 7);
+        MonteCarlo.Result expected = new MonteCarlo(1, 42).run(r, channel, depth, maxWords, targetErrors);
+        checkTarget(expected, maxWords, targetErrors);
+        for (int threads : new int[] {2, 4, 8}) {
+            for (int t = 0; t < 3; t++) {
+                MonteCarlo.Result result = new MonteCarlo(threads, 42).run(r, channel, depth, maxWords, targetErrors);
+                checkSame(result, expected, threads + " threads, burst, depth = " + depth + ", target = " + targetErrors);
+            }
+        }
+    }
+
+    /**
+     * The simulation stops at the maximum of words, or with at least the target of word errors.
+     */
+    static void checkTarget(MonteCarlo.Result result, long maxWords, long targetErrors) {
+        check(result.words <= maxWords, "more words than the maximum : " + result.words);
+        if (targetErrors > 0 && result.words < maxWords) {
+            check(result.wordErrors >= targetErrors, "stopped before the target : " + result.wordErrors);
+        }
+        if (targetErrors == 0) {
+            check(result.words == maxWords, "all the words not simulated : " + result.words);
+        }
+    }
+
+    static void checkSame(MonteCarlo.Result result, MonteCarlo.Result expected, String message) {
+        check(result.words == expected.words && result.wordErrors == expected.wordErrors
+                && result.bitErrors == expected.bitErrors, message + " : " + result + " instead of " + expected);
+    }
+
+    /**
+     * Fail the test if the condition is false.
+     */
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
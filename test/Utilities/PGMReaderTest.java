@@ -0,0 +1,429 @@
+package Utilities;
+
+import CodeRM.Pipeline;
+import CodeRM.ReedMuller;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests of 'PGMReader' and 'PGMWriter' : the values written are read back the same.
+ *
+ * The tests need no library, they are run by the main method :
+ *
+ *      javac -d out $(find src test -name '*.java')
+ *      java -cp out Utilities.PGMReaderTest
+ *
+ * A failed test throws an 'AssertionError' (exit code 1).
+ */
+public class PGMReaderTest {
+
+    public static void main(String[] args) throws IOException {
+        testHeader();
+        testPixels();
+        testSize();
+        testUnsigned();
+        testWords();
+        testBinary(255);
+        testBinary(1000);
+        testBinaryHeader();
+        testFormats();
+        testClosed();
+        for (int r = 7; r <= 14; r++) {
+            testDecimal(r);
+        }
+        System.out.println("PGMReaderTest : OK");
+    }
+
+    /**
+     * The header is kept as it is in the file, with its comments.
+     */
+    static void testHeader() throws IOException {
+        String header = "P2\n# CREATOR: XV Version 3.10a  Rev: 12/29/94\n3 2\n255\n";
+        PGMReader reader = reader(header + "1 2 3\n4 5 6\n");
+        check(reader.getHeader().equals(header), "header : " + reader.getHeader());
+        check(reader.getComments().equals("# CREATOR: XV Version 3.10a  Rev: 12/29/94\n"), "comments : " + reader.getComments());
+        check(reader.getWidth() == 3 && reader.getHeight() == 2 && reader.getMaxGray() == 255, "size");
+        check(!reader.isBinary(), "text file read as binary");
+
+        // Values on the line of the gray level.
+        reader = reader("P2\n2 1\n255 7 9\n");
+        check(reader.getHeader().equals("P2\n2 1\n255\n"), "header before values : " + reader.getHeader());
+        check(Arrays.equals(ParsePGM.readPixels(reader), new int[] {7, 9}), "values on the line of the gray level");
+
+        // Whitespaces and a comment after the gray level.
+        reader = reader("P2\n2 1\n255  # end\r\n7 9\n");
+        check(reader.getHeader().equals("P2\n2 1\n255  # end\n"), "header with a comment at the end : " + reader.getHeader());
+        check(reader.getComments().equals("# end\n"), "comment at the end : " + reader.getComments());
+        check(Arrays.equals(ParsePGM.readPixels(reader), new int[] {7, 9}), "values after a comment");
+
+        // Other formats.
+        for (String magic : new String[] {"P1", "P3", "P6", "XX"}) {
+            try {
+                reader(magic + "\n2 1\n255\n7 9\n");
+                throw new AssertionError("magic number accepted : " + magic);
+            }
+            catch (IOException e) {
+                // Expected.
+            }
+        }
+    }
+
+    /**
+     * Pixels written by 'PGMWriter' are read back by 'nextLong' and 'ParsePGM.readPixels'.
+     */
+    static void testPixels() throws IOException {
+        Random random = new Random(1);
+        int[] pixels = new int[100 * 70];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt(256);
+        }
+        byte[] file = write(ParsePGM.header(100, 70, 255), pixels);
+
+        PGMReader reader = new PGMReader(new ByteArrayInputStream(file));
+        for (int i = 0; i < pixels.length; i++) {
+            check(reader.hasNext(), "end of file at " + i);
+            check(reader.nextLong() == pixels[i], "pixel " + i);
+        }
+        check(!reader.hasNext(), "value after the last pixel");
+
+        int[] read = ParsePGM.readPixels(new PGMReader(new ByteArrayInputStream(file)));
+        check(Arrays.equals(read, pixels), "readPixels");
+    }
+
+    /**
+     * 'ParsePGM.readPixels' returns the values of the file, fewer or more than width * height.
+     */
+    static void testSize() throws IOException {
+        int[] read = ParsePGM.readPixels(reader("P2\n4 4\n255\n1 2 3\n"));
+        check(Arrays.equals(read, new int[] {1, 2, 3}), "short file : " + Arrays.toString(read));
+
+        read = ParsePGM.readPixels(reader("P2\n2 1\n255\n1 2 3 4 5\n"));
+        check(Arrays.equals(read, new int[] {1, 2, 3, 4, 5}), "long file : " + Arrays.toString(read));
+
+        read = ParsePGM.readPixels(reader("P2\n0 0\n255\n7 8\n"));
+        check(Arrays.equals(read, new int[] {7, 8}), "empty size : " + Arrays.toString(read));
+
+        read = ParsePGM.readPixels(reader("P2\n2 2\n255\n1 2 3 4\n"));
+        check(Arrays.equals(read, new int[] {1, 2, 3, 4}), "exact file : " + Arrays.toString(read));
+
+        // Too many values for one array (65536 * 65536 is 0 in an int).
+        for (String size : new String[] {"65536 65536", "100000 100000", "46341 46341"}) {
+            String image = "P2\n" + size + "\n255\n1 2\n";
+            tooLarge(() -> ParsePGM.readPixels(reader(image)), "readPixels, " + size);
+            tooLarge(() -> ParsePGM.readPixelBuffer(reader(image)), "readPixelBuffer, " + size);
+            tooLarge(() -> ParsePGM.readWordBuffer(reader(image), 3), "readWordBuffer, " + size);
+        }
+        tooLarge(() -> ParsePGM.readWords(reader("P2\n32768 32768\n255\n1 2\n"), 2, 128), "readWords");
+        tooLarge(() -> ParsePGM.readWordBuffer(reader("P2\n8192 8192\n255\n1 2\n"), 10), "readWordBuffer, r = 10");
+    }
+
+    /**
+     * A read which must fail because the image is too large.
+     */
+    interface Read {
+        Object read() throws IOException;
+    }
+
+    static void tooLarge(Read read, String message) {
+        try {
+            read.read();
+            throw new AssertionError("image too large read : " + message);
+        }
+        catch (IOException e) {
+            check(e.getMessage().contains("too large"), message + " : " + e.getMessage());
+        }
+    }
+
+    /**
+     * The encoded words of 64 bits are written unsigned and read back on 64 bits.
+     */
+    static void testUnsigned() throws IOException {
+        long[] values = {0, 1, -1L, Long.MIN_VALUE, Long.MAX_VALUE, 0x8000000000000001L};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PGMWriter writer = new PGMWriter(out, ParsePGM.header(values.length, 1, 255));
+        for (long value : values) {
+            writer.writeLong(value);
+        }
+        writer.close();
+        check(new String(out.toByteArray(), "ISO-8859-1").contains("18446744073709551615 "), "unsigned value");
+
+        PGMReader reader = new PGMReader(new ByteArrayInputStream(out.toByteArray()));
+        long[] word = new long[1];
+        for (long value : values) {
+            reader.next(word, 0, 1, 64);
+            check(word[0] == value, "value " + Long.toUnsignedString(value));
+        }
+
+        // A negative value is taken on the number of bits of the word.
+        reader = reader("P2\n1 1\n255\n-1\n");
+        reader.next(word, 0, 1, 16);
+        check(word[0] == 0xffff, "negative value on 16 bits : " + word[0]);
+    }
+
+    /**
+     * The values on several longs are read back the same.
+     */
+    static void testWords() throws IOException {
+        Random random = new Random(2);
+        int words = 2;
+        long[] values = new long[50 * words];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextLong();
+        }
+        values[0] = 0;
+        values[1] = 0;
+        values[2] = -1L;
+        values[3] = -1L;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PGMWriter writer = new PGMWriter(out, ParsePGM.header(50, 1, 255));
+        for (int i = 0; i < values.length; i += words) {
+            writer.write(values, i, words);
+        }
+        writer.close();
+
+        long[] read = ParsePGM.readWords(new PGMReader(new ByteArrayInputStream(out.toByteArray())), words, 128);
+        check(Arrays.equals(read, values), "words on 128 bits");
+    }
+
+    /**
+     * Pixels written in a binary file (one byte per pixel, or two if the gray level is 256 or more)
+     * are read back, also when a value is on two fillings of the buffer of the reader,
+     * and the file converted to text is the text file of the same pixels.
+     */
+    static void testBinary(int maxGray) throws IOException {
+        Random random = new Random(maxGray);
+        int[] pixels = new int[300 * 301];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt(maxGray + 1);
+        }
+        // A header of an odd length, so the values of two bytes cross the end of the buffer of the reader.
+        String header = ParsePGM.header(300, 301, maxGray, true, "# odd\n");
+        byte[] binary = write(header, pixels);
+        check(binary.length == header.length() + pixels.length * (maxGray < 256 ? 1 : 2), "size of the binary file, " + maxGray);
+
+        PGMReader reader = new PGMReader(new ByteArrayInputStream(binary));
+        check(reader.isBinary() && reader.getHeader().equals(header), "binary header, " + maxGray);
+        check(Arrays.equals(ParsePGM.readPixels(reader), pixels), "binary pixels, " + maxGray);
+
+        reader = new PGMReader(new ByteArrayInputStream(binary));
+        for (int i = 0; i < 1000; i++) {
+            check(reader.nextLong() == pixels[i], "binary nextLong " + i + ", " + maxGray);
+        }
+
+        // Binary to text : the same file as the pixels written in text.
+        reader = new PGMReader(new ByteArrayInputStream(binary));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PGMWriter writer = new PGMWriter(out, ParsePGM.header(reader.getHeader(), false));
+        while (reader.hasNext()) {
+            writer.writeLong(reader.nextLong());
+        }
+        writer.close();
+        byte[] text = write(ParsePGM.header(300, 301, maxGray, false, "# odd\n"), pixels);
+        check(Arrays.equals(out.toByteArray(), text), "binary to text, " + maxGray);
+    }
+
+    /**
+     * A binary header with the size and the gray level on one line, and a comment inside.
+     * A value bigger than the gray level is not written in a binary file.
+     */
+    static void testBinaryHeader() throws IOException {
+        PGMReader reader = reader("P5 2 # size\n 1 200\n" + (char)7 + (char)200);
+        check(reader.getWidth() == 2 && reader.getHeight() == 1 && reader.getMaxGray() == 200, "binary header on one line");
+        check(reader.getComments().equals("# size\n"), "comment of the binary header");
+        check(reader.nextLong() == 7 && reader.nextLong() == 200 && !reader.hasNext(), "binary values");
+
+        PGMWriter writer = new PGMWriter(new ByteArrayOutputStream(), ParsePGM.header(1, 1, 200, true));
+        try {
+            writer.writeLong(201);
+            throw new AssertionError("value bigger than the gray level written");
+        }
+        catch (IOException e) {
+            // Expected.
+        }
+    }
+
+    /**
+     * An image in text goes through all the formats : binary (P5), encoded in text,
+     * packed (RMP1), encoded in text again, decoded in binary, and gives the same pixels
+     * (the codes carry r + 1 >= 8 bits).
+     */
+    static void testFormats() throws IOException {
+        Random random = new Random(3);
+        int[] pixels = new int[64 * 48];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt(256);
+        }
+        String comments = "# CREATOR: test\n";
+        File text = temp(write(ParsePGM.header(64, 48, 255, false, comments), pixels));
+
+        // Text to binary.
+        PGMReader reader = PGMReader.open(text.getPath());
+        File binary = temp(write(ParsePGM.header(reader.getHeader(), true), ParsePGM.readPixels(reader)));
+        reader.close();
+
+        for (int r : new int[] {7, 9}) {
+            ReedMuller rm = new ReedMuller(r);
+            int words = rm.getWords();
+
+            // Binary pixels to encoded words in text, then packed.
+            reader = PGMReader.open(binary.getPath());
+            long[] codes = rm.encode(ParsePGM.readPixels(reader));
+            File encoded = temp(new byte[0]);
+            ParsePGM.writeWords(encoded.getPath(), ParsePGM.header(reader.getHeader(), false), codes, words);
+            reader.close();
+            File packed = temp(new byte[0]);
+            ParsePGM.textToPacked(encoded.getPath(), packed.getPath(), r);
+
+            // Packed to text, decoded in binary.
+            File back = temp(new byte[0]);
+            ParsePGM.packedToText(packed.getPath(), back.getPath());
+            check(Arrays.equals(Files.readAllBytes(back.toPath()), Files.readAllBytes(encoded.toPath())), "packed to text, r = " + r);
+            reader = PGMReader.open(back.getPath());
+            int[] decoded = rm.decode(ParsePGM.readWords(reader, words, rm.getLength()));
+            File result = temp(write(ParsePGM.header(reader.getHeader(), true), decoded));
+            reader.close();
+
+            reader = PGMReader.open(result.getPath());
+            check(reader.getComments().equals(comments), "comments, r = " + r);
+            check(Arrays.equals(ParsePGM.readPixels(reader), pixels), "pixels, r = " + r);
+            reader.close();
+            check(Arrays.equals(Files.readAllBytes(result.toPath()), Files.readAllBytes(binary.toPath())), "binary file, r = " + r);
+        }
+    }
+
+    /**
+     * The values of 2^r bits written in decimal are read as 'BigInteger' reads them, with numbers of
+     * digits around the groups of 9 digits of the reader, leading zeros and negative values
+     * (taken on 2^r bits). The values written by 'PGMWriter' are the decimal of 'BigInteger'.
+     */
+    static void testDecimal(int r) throws IOException {
+        int bits = 1 << r;
+        int words = bits >>> 6;
+        BigInteger modulus = BigInteger.ONE.shiftLeft(bits);
+        Random random = new Random(r);
+        StringBuilder file = new StringBuilder(ParsePGM.header(0, 0, 255));
+        List<BigInteger> expected = new ArrayList<BigInteger>();
+        for (int digits : new int[] {1, 8, 9, 10, 17, 18, 19, 27, 100}) {
+            BigInteger value = new BigInteger(digits * 4, random).mod(BigInteger.TEN.pow(digits));
+            file.append(value).append(' ');
+            expected.add(value.mod(modulus));
+        }
+        for (int t = 0; t < 20; t++) {
+            BigInteger value = new BigInteger(bits, random);
+            file.append(value).append('\n');
+            expected.add(value);
+            file.append("000").append(value).append(' ');
+            expected.add(value);
+            file.append('-').append(value).append(' ');
+            expected.add(value.negate().mod(modulus));
+        }
+        BigInteger max = modulus.subtract(BigInteger.ONE);
+        file.append(max).append(' ');
+        expected.add(max);
+
+        PGMReader reader = reader(file.toString());
+        long[] value = new long[words + 1];
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PGMWriter writer = new PGMWriter(out, ParsePGM.header(0, 0, 255));
+        StringBuilder written = new StringBuilder(ParsePGM.header(0, 0, 255));
+        for (int i = 0; i < expected.size(); i++) {
+            check(reader.hasNext(), "end of file at " + i + ", r = " + r);
+            reader.next(value, 1, words, bits);
+            BigInteger read = BigInteger.ZERO;
+            for (int k = words; k >= 1; k--) {
+                read = read.shiftLeft(64).or(new BigInteger(Long.toUnsignedString(value[k])));
+            }
+            check(read.equals(expected.get(i)), "decimal value " + i + ", r = " + r);
+            writer.write(value, 1, words);
+            written.append(expected.get(i)).append(' ');
+        }
+        check(!reader.hasNext(), "value after the last one, r = " + r);
+        writer.close();
+        written.append('\n');
+        check(new String(out.toByteArray(), "ISO-8859-1").equals(written.toString()), "decimal written, r = " + r);
+    }
+
+    /**
+     * The files written are closed when a value can't be written (a value bigger than the gray level
+     * of a binary file) : the number of open files is the same after many failed writes (Linux only).
+     */
+    static void testClosed() throws IOException {
+        File fds = new File("/proc/self/fd");
+        if (!fds.isDirectory()) {
+            return;
+        }
+        File input = temp("P2\n3 1\n255\n1 2 3\n".getBytes("ISO-8859-1"));
+        File output = temp(new byte[0]);
+        Pipeline pipeline = new Pipeline(Pipeline.encode(new ReedMuller(4)));
+        int open = fds.list().length;
+        for (int i = 0; i < 50; i++) {
+            failWrite(() -> ParsePGM.writePixels(output.getPath(), "P5\n2 1\n255\n", new int[] {1, 300}));
+            failWrite(() -> ParsePGM.writeWords(output.getPath(), "P5\n2 1\n255\n", new long[] {1, 300}, 1));
+            failWrite(() -> pipeline.run(input.getPath(), output.getPath(), true));
+        }
+        int left = fds.list().length - open;
+        check(left < 10, "files left open : " + left);
+    }
+
+    /**
+     * A write which must fail.
+     */
+    interface Write {
+        void write() throws IOException;
+    }
+
+    static void failWrite(Write write) {
+        try {
+            write.write();
+            throw new AssertionError("value bigger than the gray level written");
+        }
+        catch (IOException e) {
+            // Expected.
+        }
+    }
+
+    /**
+     * Temporary file with a content, deleted at the end.
+     */
+    static File temp(byte[] content) throws IOException {
+        File file = File.createTempFile("pgm", ".pgm");
+        file.deleteOnExit();
+        Files.write(file.toPath(), content);
+        return file;
+    }
+
+    /**
+     * Reader of a PGM file given as a String.
+     */
+    static PGMReader reader(String file) throws IOException {
+        return new PGMReader(new ByteArrayInputStream(file.getBytes("ISO-8859-1")));
+    }
+
+    /**
+     * Write pixels with a header in memory.
+     */
+    static byte[] write(String header, int[] pixels) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PGMWriter writer = new PGMWriter(out, header);
+        for (int pixel : pixels) {
+            writer.writeLong(pixel);
+        }
+        writer.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * Fail the test if the condition is false.
+     */
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
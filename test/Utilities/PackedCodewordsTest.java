@@ -0,0 +1,135 @@
+package Utilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests of 'PackedCodewords' : the encoded words written in a packed file are read back the same,
+ * from the whole file or by windows, and the conversions with the text format keep the file.
+ *
+ * Run (see 'PGMReaderTest') :
+ *
+ *      java -cp out Utilities.PackedCodewordsTest
+ */
+public class PackedCodewordsTest {
+
+    public static void main(String[] args) throws IOException {
+        for (int r = 0; r <= 10; r++) {
+            testRoundTrip(r, 1000);
+            testWindows(r, 1000);
+            testText(r, 300);
+        }
+        testRoundTrip(4, 0);
+        System.out.println("PackedCodewordsTest : OK");
+    }
+
+    /**
+     * The words written by 'ParsePGM.writePacked' are read back with the header of the image.
+     */
+    static void testRoundTrip(int r, int count) throws IOException {
+        long[] codes = codes(r, count, r);
+        File file = temp();
+        ParsePGM.writePacked(file.getPath(), 40, 25, 255, r, codes);
+
+        check(file.length() == PackedCodewords.HEADER_SIZE + PackedCodewords.dataSize(r, count), "size of the file, r = " + r);
+        PackedCodewords packed = PackedCodewords.map(file.getPath());
+        check(packed.getWidth() == 40 && packed.getHeight() == 25 && packed.getMaxGray() == 255, "header, r = " + r);
+        check(packed.getRang() == r && packed.getCount() == count, "rang and count, r = " + r);
+        check(packed.getComments().isEmpty(), "comments, r = " + r);
+        check(Arrays.equals(packed.toArray(), codes), "words, r = " + r);
+        if (r <= 6) {
+            for (int i = 0; i < count; i++) {
+                check(packed.get(i) == codes[i], "word " + i + ", r = " + r);
+            }
+        }
+        check(Arrays.equals(ParsePGM.readPacked(file.getPath()), codes), "readPacked, r = " + r);
+    }
+
+    /**
+     * The words of a window have the same values as in the whole file.
+     */
+    static void testWindows(int r, int count) throws IOException {
+        long[] codes = codes(r, count, r + 100);
+        File file = temp();
+        PackedCodewords.Writer writer = new PackedCodewords.Writer(file.getPath(), count, 1, 255, r, "# window\n");
+        int words = r <= 6 ? 1 : 1 << (r - 6);
+        for (int i = 0; i < count; i++) {
+            writer.write(codes, i * words);
+        }
+        writer.close();
+
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long[] code = new long[words];
+            for (int first = 0; first < count; first += 136) {
+                PackedCodewords window = PackedCodewords.map(channel, first, 136);
+                check(window.getFirst() == first && window.getSize() == Math.min(136, count - first), "window " + first);
+                check(window.getComments().equals("# window\n"), "comments of the window " + first);
+                for (int i = first; i < first + window.getSize(); i++) {
+                    window.get(i, code, 0);
+                    for (int k = 0; k < words; k++) {
+                        check(code[k] == codes[i * words + k], "word " + i + " of the window " + first + ", r = " + r);
+                    }
+                }
+            }
+        }
+        finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * A text file converted to the packed format and back is the same, comments included.
+     */
+    static void testText(int r, int count) throws IOException {
+        long[] codes = codes(r, count, r + 200);
+        int words = r <= 6 ? 1 : 1 << (r - 6);
+        String header = "P2\n# CREATOR: test\n" + count + " 1\n255\n";
+        File text = temp();
+        File packed = temp();
+        File back = temp();
+        ParsePGM.writeWords(text.getPath(), header, codes, words);
+        ParsePGM.textToPacked(text.getPath(), packed.getPath(), r);
+        ParsePGM.packedToText(packed.getPath(), back.getPath());
+
+        check(Arrays.equals(ParsePGM.readPacked(packed.getPath()), codes), "text to packed, r = " + r);
+        check(Arrays.equals(Files.readAllBytes(text.toPath()), Files.readAllBytes(back.toPath())), "packed to text, r = " + r);
+    }
+
+    /**
+     * Random encoded words of 2^r bits.
+     */
+    static long[] codes(int r, int count, long seed) {
+        Random random = new Random(seed);
+        int length = 1 << r;
+        int words = r <= 6 ? 1 : 1 << (r - 6);
+        long[] codes = new long[count * words];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = length < 64 ? random.nextLong() & ((1L << length) - 1) : random.nextLong();
+        }
+        return codes;
+    }
+
+    /**
+     * Temporary file, deleted at the end.
+     */
+    static File temp() throws IOException {
+        File file = File.createTempFile("packed", ".rmp");
+        file.deleteOnExit();
+        return file;
+    }
+
+    /**
+     * Fail the test if the condition is false.
+     */
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}